@@ -0,0 +1,96 @@
+package dev.lost.furnace.resourcepackbuilder;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * What every entry of a built pack was built from, stored next to the pack so the next build can copy the unchanged entries
+ */
+class BuildManifest {
+
+    private static final int VERSION = 1;
+
+    /**
+     * @param hash the SHA-256 of the entry content before it was optimised and compressed
+     */
+    record Entry(@NotNull String hash, long crc, long compressedSize, long size) {
+    }
+
+    private final String settings;
+    private final Map<String, Entry> entries = new Object2ObjectOpenHashMap<>();
+
+    /**
+     * @param settings everything changing the output of an entry other than its content (compression level, PNG optimiser...)
+     */
+    BuildManifest(@NotNull String settings) {
+        this.settings = settings;
+    }
+
+    static @NotNull File file(@NotNull File outputFile) {
+        return new File(outputFile.getPath() + ".manifest.json");
+    }
+
+    /**
+     * @return the manifest of the previous build, or {@code null} if there is none or it was built with other settings
+     */
+    static @Nullable BuildManifest read(@NotNull File file, @NotNull String settings) {
+        if (!file.isFile()) return null;
+        try {
+            JsonObject json = JsonParser.parseString(Files.readString(file.toPath(), StandardCharsets.UTF_8)).getAsJsonObject();
+            if (json.get("version").getAsInt() != VERSION || !settings.equals(json.get("settings").getAsString())) return null;
+            BuildManifest manifest = new BuildManifest(settings);
+            for (Map.Entry<String, JsonElement> e : json.getAsJsonObject("entries").entrySet()) {
+                JsonObject entry = e.getValue().getAsJsonObject();
+                manifest.entries.put(e.getKey(), new Entry(
+                        entry.get("hash").getAsString(),
+                        entry.get("crc").getAsLong(),
+                        entry.get("compressed_size").getAsLong(),
+                        entry.get("size").getAsLong()
+                ));
+            }
+            return manifest;
+        } catch (Exception e) {
+            return null; // A broken manifest only means a full build
+        }
+    }
+
+    @Nullable Entry get(@NotNull String path) {
+        return entries.get(path);
+    }
+
+    void put(@NotNull String path, @NotNull Entry entry) {
+        entries.put(path, entry);
+    }
+
+    void write(@NotNull File file) {
+        JsonObject json = new JsonObject();
+        json.addProperty("version", VERSION);
+        json.addProperty("settings", settings);
+        JsonObject entriesJson = new JsonObject();
+        entries.forEach((path, entry) -> {
+            JsonObject entryJson = new JsonObject();
+            entryJson.addProperty("hash", entry.hash());
+            entryJson.addProperty("crc", entry.crc());
+            entryJson.addProperty("compressed_size", entry.compressedSize());
+            entryJson.addProperty("size", entry.size());
+            entriesJson.add(path, entryJson);
+        });
+        json.add("entries", entriesJson);
+        try {
+            Files.writeString(file.toPath(), json.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the build manifest", e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package dev.lost.furnace.resourcepackbuilder;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Deflater;
+
+/**
+ * Raw deflate where the big inputs are split in blocks compressed at the same time, like pigz does. Every block uses the end of the
+ * previous one as dictionary and ends on a byte boundary, so the blocks are concatenated as they are.
+ * <p>
+ * The output only depends on the input and the level, not on how many threads compressed it.
+ */
+final class ParallelDeflater {
+
+    static final int BLOCK_SIZE = 1 << 17;
+    private static final int DICTIONARY_SIZE = 1 << 15; // The deflate window
+
+    private ParallelDeflater() {
+    }
+
+    /**
+     * Compresses the blocks in the current fork join pool, or one after the other when called from outside of one
+     */
+    static byte @NotNull [] deflate(byte @NotNull [] data, int level) {
+        int blocks = (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (blocks <= 1) return deflate(data, 0, data.length, level, true);
+
+        List<ForkJoinTask<byte[]>> tasks = new ObjectArrayList<>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            int offset = i * BLOCK_SIZE;
+            int length = Math.min(BLOCK_SIZE, data.length - offset);
+            boolean last = i == blocks - 1;
+            tasks.add(ForkJoinTask.adapt(() -> deflate(data, offset, length, level, last)));
+        }
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            for (ForkJoinTask<byte[]> task : tasks) task.invoke();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        for (ForkJoinTask<byte[]> task : tasks) out.writeBytes(task.join());
+        return out.toByteArray();
+    }
+
+    private static byte @NotNull [] deflate(byte @NotNull [] data, int offset, int length, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (offset > 0) {
+                int dictionary = Math.min(offset, DICTIONARY_SIZE);
+                deflater.setDictionary(data, offset - dictionary, dictionary);
+            }
+            deflater.setInput(data, offset, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 2));
+            byte[] buffer = new byte[8192];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // Not the final block, and aligned on a byte so the next one can follow it
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -10,7 +10,8 @@ public interface ResourcePackBuilder {
     void build(ResourcePack resourcePack, File outputFile, @NotNull BuildOptions option);
 
     enum BuildOptions {
-        MAX_COMPRESSION, // best compression level
+        MAX_COMPRESSION, // best compression level, PNGs optimised by oxipng (in process if it is not available)
+        MAX_COMPRESSION_IN_PROCESS, // best compression level, PNGs optimised in process without oxipng
         COMPRESSED, // balanced compression level
         NO_COMPRESSION // fastest but also the more readable JSON files
     }
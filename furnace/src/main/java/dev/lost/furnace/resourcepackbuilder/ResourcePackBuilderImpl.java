@@ -10,82 +10,200 @@ import dev.lost.furnace.files.unknown.UnknownFile;
 import dev.lost.furnace.resourcepack.BedrockResourcePack;
 import dev.lost.furnace.resourcepack.JavaResourcePack;
 import dev.lost.furnace.resourcepack.ResourcePack;
+import dev.lost.furnace.utils.JavaPngOptimizer;
 import dev.lost.furnace.utils.PngOptimizer;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
+/**
+ * Builds are incremental: the entries whose content did not change since the previous build of the same file (with the same
+ * options) are copied from it as they are stored, only the other ones are optimised and compressed.
+ * <p>
+ * PNGs are optimised on {@link PngOptimizer#THREADS} threads, by oxipng or {@link JavaPngOptimizer}, and the entries are compressed
+ * on every core ({@link ParallelDeflater}). They are still written in the order they were added, identical packs give identical zips.
+ */
 public class ResourcePackBuilderImpl implements ResourcePackBuilder {
 
+    private int reusedEntries = 0;
+
     @Override
     public void build(ResourcePack resourcePack, File outputFile, @NotNull BuildOptions option) {
-        try (FileOutputStream fos = new FileOutputStream(outputFile); ZipOutputStream zos = new ZipOutputStream(fos)) {
-            Gson gson = option == BuildOptions.NO_COMPRESSION
-                    ? new GsonBuilder().setPrettyPrinting().create()
-                    : new Gson();
-
-            zos.setMethod(ZipOutputStream.DEFLATED);
-            zos.setLevel(switch (option) {
-                case MAX_COMPRESSION -> Deflater.BEST_COMPRESSION;
-                case COMPRESSED -> Deflater.DEFAULT_COMPRESSION;
-                case NO_COMPRESSION -> Deflater.NO_COMPRESSION;
-            });
-
-            switch (resourcePack) {
-                case JavaResourcePack javaPack -> {
-                    writeEntry(zos, "pack.mcmeta", gson.toJson(javaPack.mcmeta().json()));
-                    for (Map.Entry<String, Model> e : javaPack.models().entrySet()) {
-                        writeEntry(zos, e.getKey(), gson.toJson(e.getValue().toJson()));
-                    }
+        Gson gson = option == BuildOptions.NO_COMPRESSION
+                ? new GsonBuilder().setPrettyPrinting().create()
+                : new Gson();
+        List<PackEntry> entries = new ObjectArrayList<>();
+        boolean optimisePng = option == BuildOptions.MAX_COMPRESSION || option == BuildOptions.MAX_COMPRESSION_IN_PROCESS;
+
+        switch (resourcePack) {
+            case JavaResourcePack javaPack -> {
+                entries.add(PackEntry.text("pack.mcmeta", gson.toJson(javaPack.mcmeta().json())));
+                for (Map.Entry<String, Model> e : javaPack.models().entrySet()) {
+                    entries.add(PackEntry.text(e.getKey(), gson.toJson(e.getValue().toJson())));
                 }
-                case BedrockResourcePack bedrockPack -> writeEntry(zos, "manifest.json", gson.toJson(bedrockPack.manifest().json()));
-                default -> throw new IllegalStateException("Unexpected value: " + resourcePack);
             }
+            case BedrockResourcePack bedrockPack -> entries.add(PackEntry.text("manifest.json", gson.toJson(bedrockPack.manifest().json())));
+            default -> throw new IllegalStateException("Unexpected value: " + resourcePack);
+        }
 
-            for (Map.Entry<String, JsonElement> e : resourcePack.jsonFiles().entrySet()) {
-                writeEntry(zos, e.getKey(), gson.toJson(e.getValue()));
-            }
+        for (Map.Entry<String, JsonElement> e : resourcePack.jsonFiles().entrySet()) {
+            entries.add(PackEntry.text(e.getKey(), gson.toJson(e.getValue())));
+        }
 
-            for (Map.Entry<String, Texture> e : resourcePack.textures().entrySet()) {
-                writeEntry(zos, e.getKey(), e.getValue().file().getBytes(), option == BuildOptions.MAX_COMPRESSION);
-            }
+        for (Map.Entry<String, Texture> e : resourcePack.textures().entrySet()) {
+            entries.add(new PackEntry(e.getKey(), e.getValue().file().getBytes(), optimisePng));
+        }
 
-            for (Map.Entry<String, UnknownFile> e : resourcePack.unknownFiles().entrySet()) {
-                ResourcePackFile rf = e.getValue().file();
-                writeEntry(zos, rf.getPath(), rf.getBytes(), option == BuildOptions.MAX_COMPRESSION);
-            }
+        for (Map.Entry<String, UnknownFile> e : resourcePack.unknownFiles().entrySet()) {
+            ResourcePackFile rf = e.getValue().file();
+            entries.add(new PackEntry(rf.getPath(), rf.getBytes(), optimisePng));
+        }
 
-            if (option == BuildOptions.MAX_COMPRESSION) {
-                if (PngOptimizer.EXE == null || !Files.exists(PngOptimizer.EXE)) {
-                    System.err.println("Warning: PNG optimization executable not found but MAX_COMPRESSION is enabled.");
+        boolean oxipng = PngOptimizer.EXE != null && Files.exists(PngOptimizer.EXE);
+        if (option == BuildOptions.MAX_COMPRESSION && !oxipng) {
+            PngOptimizer.LOGGER.warning("PNG optimization executable not found but MAX_COMPRESSION is enabled, PNGs are optimized in process.");
+        }
+        boolean inProcess = option == BuildOptions.MAX_COMPRESSION_IN_PROCESS || !oxipng;
+
+        // PNGs optimised by oxipng are not the same as the other ones, the entries of such a build cannot be reused
+        String settings = option.name() + ";png=" + (!optimisePng ? "none" : inProcess ? "java" : "oxipng");
+        File manifestFile = BuildManifest.file(outputFile);
+        BuildManifest previous = outputFile.isFile() ? BuildManifest.read(manifestFile, settings) : null;
+        BuildManifest manifest = new BuildManifest(settings);
+        File tmpFile = new File(outputFile.getPath() + ".tmp");
+        ExecutorService pngExecutor = null;
+        ForkJoinPool deflateExecutor = null;
+        reusedEntries = 0;
+        try {
+            try (ZipArchiveReader previousZip = previous != null ? ZipArchiveReader.open(outputFile.toPath()) : null;
+                 ZipArchiveWriter writer = new ZipArchiveWriter(tmpFile)) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                int level = switch (option) {
+                    case MAX_COMPRESSION, MAX_COMPRESSION_IN_PROCESS -> Deflater.BEST_COMPRESSION;
+                    case COMPRESSED -> Deflater.DEFAULT_COMPRESSION;
+                    case NO_COMPRESSION -> Deflater.NO_COMPRESSION;
+                };
+                int size = entries.size();
+                String[] hashes = new String[size];
+                List<CompletableFuture<ZipArchiveWriter.Entry>> compressed = new ObjectArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    PackEntry entry = entries.get(i);
+                    hashes[i] = HexFormat.of().formatHex(digest.digest(entry.bytes()));
+                    ZipArchiveWriter.Entry reused = previousZip != null ? reuse(previousZip, previous, entry.path(), hashes[i]) : null;
+                    if (reused != null) {
+                        reusedEntries++;
+                        compressed.add(CompletableFuture.completedFuture(reused));
+                        continue;
+                    }
+                    // Entries are compressed in the background while the ones before them are written
+                    if (deflateExecutor == null) deflateExecutor = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                    if (entry.optimisePng() && entry.path().endsWith(".png")) {
+                        if (pngExecutor == null) pngExecutor = newPngExecutor();
+                        compressed.add(CompletableFuture.supplyAsync(() -> inProcess
+                                        ? JavaPngOptimizer.optimise(entry.bytes())
+                                        : PngOptimizer.optimise(entry.bytes()), pngExecutor)
+                                .exceptionally(e -> entry.bytes())
+                                .thenApplyAsync(png -> compress(entry.path(), png, level), deflateExecutor));
+                    } else {
+                        compressed.add(CompletableFuture.supplyAsync(() -> compress(entry.path(), entry.bytes(), level), deflateExecutor));
+                    }
                 }
+                for (int i = 0; i < size; i++) {
+                    ZipArchiveWriter.Entry zipEntry = join(compressed.get(i));
+                    writer.write(zipEntry);
+                    manifest.put(zipEntry.name(), new BuildManifest.Entry(hashes[i], zipEntry.crc(), zipEntry.data().length, zipEntry.size()));
+                }
+                writer.finish();
             }
-
-            zos.finish();
+            // The previous pack is read while the new one is written, it is only replaced once complete
+            Files.move(tmpFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            manifest.write(manifestFile);
         } catch (IOException ex) {
             throw new UncheckedIOException("Cannot build resource-pack zip", ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        } finally {
+            if (pngExecutor != null) pngExecutor.shutdownNow();
+            if (deflateExecutor != null) deflateExecutor.shutdownNow();
+            try {
+                Files.deleteIfExists(tmpFile.toPath()); // Only left if the build failed before it was moved
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * @return how many entries the last build copied from the previous one instead of compressing them again
+     */
+    public int reusedEntries() {
+        return reusedEntries;
+    }
+
+    private static @NotNull ExecutorService newPngExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, PngOptimizer.THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "Furnace PNG optimizer #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the entry as stored in the previous build if it was built from the same content, {@code null} otherwise
+     */
+    private static ZipArchiveWriter.@Nullable Entry reuse(@NotNull ZipArchiveReader previousZip, @NotNull BuildManifest previous, @NotNull String path, @NotNull String hash) throws IOException {
+        BuildManifest.Entry previousEntry = previous.get(path);
+        if (previousEntry == null || !previousEntry.hash().equals(hash)) return null;
+        ZipArchiveReader.Entry zipEntry = previousZip.entry(path);
+        // The manifest must describe the pack it is next to, it may have been replaced by hand
+        if (zipEntry == null || zipEntry.crc() != previousEntry.crc() || zipEntry.compressedSize() != previousEntry.compressedSize()
+                || zipEntry.size() != previousEntry.size()) {
+            return null;
         }
+        return new ZipArchiveWriter.Entry(path, zipEntry.method(), zipEntry.crc(), zipEntry.size(), previousZip.readRaw(zipEntry));
     }
 
-    private void writeEntry(ZipOutputStream zos, String path, @NotNull String utf8Text) throws IOException {
-        writeEntry(zos, path, utf8Text.getBytes(StandardCharsets.UTF_8), false);
+    private static ZipArchiveWriter.@NotNull Entry join(@NotNull CompletableFuture<ZipArchiveWriter.Entry> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
     }
 
-    private void writeEntry(@NotNull ZipOutputStream zos, String path, byte[] bytes, boolean compress) throws IOException {
-        ZipEntry entry = new ZipEntry(path);
-        entry.setTime(System.currentTimeMillis());
-        zos.putNextEntry(entry);
-        if (compress && path.endsWith(".png")) bytes = PngOptimizer.optimise(bytes);
-        zos.write(bytes);
-        zos.closeEntry();
+    private static ZipArchiveWriter.@NotNull Entry compress(@NotNull String path, byte @NotNull [] bytes, int level) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return new ZipArchiveWriter.Entry(path, ZipArchiveWriter.DEFLATED, crc.getValue(), bytes.length, ParallelDeflater.deflate(bytes, level));
+    }
+
+    /**
+     * @param optimisePng whether the entry is optimised if it is a PNG
+     */
+    private record PackEntry(@NotNull String path, byte @NotNull [] bytes, boolean optimisePng) {
+        private static @NotNull PackEntry text(@NotNull String path, @NotNull String utf8Text) {
+            return new PackEntry(path, utf8Text.getBytes(StandardCharsets.UTF_8), false);
+        }
     }
 }
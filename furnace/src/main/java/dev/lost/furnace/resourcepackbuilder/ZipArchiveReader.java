@@ -0,0 +1,117 @@
+package dev.lost.furnace.resourcepackbuilder;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the entries of a zip as they are stored, without inflating them
+ */
+class ZipArchiveReader implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    record Entry(@NotNull String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+    }
+
+    private final FileChannel channel;
+    private final Map<String, Entry> entries = new Object2ObjectOpenHashMap<>();
+
+    private ZipArchiveReader(@NotNull FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static @NotNull ZipArchiveReader open(@NotNull Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ZipArchiveReader reader = new ZipArchiveReader(channel);
+            reader.readCentralDirectory();
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Nullable Entry entry(@NotNull String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return the entry data as stored in the zip (deflated or not)
+     */
+    byte @NotNull [] readRaw(@NotNull Entry entry) throws IOException {
+        ByteBuffer header = read(entry.localHeaderOffset(), LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) throw new ZipException("Invalid local header: " + entry.name());
+        long dataOffset = entry.localHeaderOffset() + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        return read(dataOffset, Math.toIntExact(entry.compressedSize())).array();
+    }
+
+    private void readCentralDirectory() throws IOException {
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, END_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(fileSize - tailSize, tailSize);
+        int end = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) throw new ZipException("End of central directory not found");
+        int count = tail.getShort(end + 10) & 0xFFFF;
+        long size = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long offset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        ByteBuffer directory = read(offset, Math.toIntExact(size));
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) throw new ZipException("Invalid central directory");
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+            byte[] name = new byte[nameLength];
+            directory.get(position + CENTRAL_HEADER_SIZE, name);
+            Entry entry = new Entry(
+                    new String(name, StandardCharsets.UTF_8),
+                    directory.getShort(position + 10) & 0xFFFF,
+                    directory.getInt(position + 16) & 0xFFFFFFFFL,
+                    directory.getInt(position + 20) & 0xFFFFFFFFL,
+                    directory.getInt(position + 24) & 0xFFFFFFFFL,
+                    directory.getInt(position + 42) & 0xFFFFFFFFL
+            );
+            entries.put(entry.name(), entry);
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    private @NotNull ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        }
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,134 @@
+package dev.lost.furnace.resourcepackbuilder;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+/**
+ * Writes zip entries that are already compressed, so an entry can be copied from a previous build without being inflated.
+ * <p>
+ * Every entry gets the same timestamp, identical entries give identical bytes. Zip64 is not supported.
+ */
+class ZipArchiveWriter implements Closeable {
+
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int VERSION = 20;
+    private static final int UTF8_FLAG = 1 << 11;
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = 1 << 5 | 1; // 1980-01-01, the earliest date a zip can hold
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    /**
+     * @param data the entry data as stored in the zip (deflated or not)
+     */
+    record Entry(@NotNull String name, int method, long crc, long size, byte @NotNull [] data) {
+    }
+
+    private final OutputStream out;
+    private final List<Entry> entries = new ObjectArrayList<>();
+    private final List<Long> offsets = new ObjectArrayList<>();
+    private final Set<String> names = new ObjectOpenHashSet<>();
+    private long offset = 0;
+
+    ZipArchiveWriter(@NotNull File file) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+    }
+
+    void write(@NotNull Entry entry) throws IOException {
+        if (!names.add(entry.name())) throw new ZipException("duplicate entry: " + entry.name());
+        if (entries.size() == MAX_ENTRIES || entry.size() > MAX_SIZE || offset > MAX_SIZE) {
+            throw new ZipException("Zip64 is not supported: " + entry.name());
+        }
+        byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+                .putShort((short) VERSION)
+                .putShort((short) UTF8_FLAG)
+                .putShort((short) entry.method())
+                .putShort((short) DOS_TIME)
+                .putShort((short) DOS_DATE)
+                .putInt((int) entry.crc())
+                .putInt(entry.data().length)
+                .putInt((int) entry.size())
+                .putShort((short) name.length)
+                .putShort((short) 0) // Extra field length
+                .put(name);
+        out.write(header.array());
+        out.write(entry.data());
+        entries.add(entry);
+        offsets.add(offset);
+        offset += header.capacity() + entry.data().length;
+    }
+
+    /**
+     * Writes the central directory, nothing can be written after it
+     */
+    void finish() throws IOException {
+        long centralDirectoryOffset = offset;
+        if (centralDirectoryOffset > MAX_SIZE) throw new ZipException("Zip64 is not supported");
+        long centralDirectorySize = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + name.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(CENTRAL_HEADER_SIGNATURE)
+                    .putShort((short) VERSION) // Version made by
+                    .putShort((short) VERSION) // Version needed to extract
+                    .putShort((short) UTF8_FLAG)
+                    .putShort((short) entry.method())
+                    .putShort((short) DOS_TIME)
+                    .putShort((short) DOS_DATE)
+                    .putInt((int) entry.crc())
+                    .putInt(entry.data().length)
+                    .putInt((int) entry.size())
+                    .putShort((short) name.length)
+                    .putShort((short) 0) // Extra field length
+                    .putShort((short) 0) // Comment length
+                    .putShort((short) 0) // Disk number
+                    .putShort((short) 0) // Internal attributes
+                    .putInt(0) // External attributes
+                    .putInt((int) offsets.get(i).longValue())
+                    .put(name);
+            out.write(header.array());
+            centralDirectorySize += header.capacity();
+        }
+        ByteBuffer end = ByteBuffer.allocate(END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(END_SIGNATURE)
+                .putShort((short) 0) // Disk number
+                .putShort((short) 0) // Disk with the central directory
+                .putShort((short) entries.size())
+                .putShort((short) entries.size())
+                .putInt((int) centralDirectorySize)
+                .putInt((int) centralDirectoryOffset)
+                .putShort((short) 0); // Comment length
+        out.write(end.array());
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
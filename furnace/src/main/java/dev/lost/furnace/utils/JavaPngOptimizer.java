@@ -0,0 +1,575 @@
+package dev.lost.furnace.utils;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Lossless PNG optimiser running in process, for when oxipng cannot be downloaded or should not be used.
+ * <p>
+ * The PNG is decoded and encoded again: the ancillary chunks are dropped, the smallest colour type and bit depth holding the same
+ * pixels is picked, every row filter strategy is tried and the image data is compressed at the highest level. Like
+ * {@code oxipng -a}, the colour of fully transparent pixels is not kept.
+ */
+public class JavaPngOptimizer {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+    private static final int ACTL = 0x6163544C;
+
+    private static final int GRAYSCALE = 0;
+    private static final int RGB = 2;
+    private static final int INDEXED = 3;
+    private static final int GRAYSCALE_ALPHA = 4;
+    private static final int RGBA = 6;
+    private static final int[] CHANNELS = {1, 0, 3, 1, 2, 0, 4};
+
+    private static final int[] ADAM7_X = {0, 4, 0, 2, 0, 1, 0};
+    private static final int[] ADAM7_Y = {0, 0, 4, 0, 2, 0, 1};
+    private static final int[] ADAM7_DX = {8, 8, 4, 4, 2, 2, 1};
+    private static final int[] ADAM7_DY = {8, 8, 8, 4, 4, 2, 2};
+
+    private static final int ADAPTIVE_FILTER = 5; // The filter giving the smallest sum of differences, picked for every row
+    private static final int MAX_PIXELS = 1 << 26;
+    private static final int LARGE_IMAGE = 1 << 20; // Raw size above which only the most likely filter strategies are tried
+
+    /**
+     * @return the optimised PNG, or the original one if it is not bigger or cannot be read
+     */
+    public static byte[] optimise(byte[] png) {
+        try {
+            Pixels pixels = decode(png);
+            if (pixels == null) return png;
+            byte[] best = png;
+            for (Format format : formats(pixels)) {
+                byte[] encoded = encode(pixels, format);
+                if (encoded.length < best.length) best = encoded;
+            }
+            return best;
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            return png; // Broken PNG, it is kept as it is
+        }
+    }
+
+    /**
+     * @param samples the red, green, blue and alpha samples of every pixel, from 0 to 255 or 65535 if {@code wide}
+     */
+    private record Pixels(int width, int height, boolean wide, int[] samples) {
+    }
+
+    /**
+     * @param key the colour of the transparent pixels when they are not stored in an alpha channel
+     */
+    private record Format(int colorType, int bitDepth, int @Nullable [] palette, int @Nullable [] key) {
+    }
+
+    /**
+     * @return the pixels of the PNG, or {@code null} if it is animated
+     */
+    private static @Nullable Pixels decode(byte[] png) throws IOException, DataFormatException {
+        if (png.length < SIGNATURE.length || !Arrays.equals(png, 0, SIGNATURE.length, SIGNATURE, 0, SIGNATURE.length)) {
+            throw new IOException("Not a PNG");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(png, SIGNATURE.length, png.length - SIGNATURE.length);
+        int width = 0, height = 0, bitDepth = 0, colorType = -1, interlace = 0;
+        byte[] palette = null;
+        byte[] transparency = null;
+        ByteArrayOutputStream imageData = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        while (true) {
+            int length = buffer.getInt();
+            int type = buffer.getInt();
+            if (length < 0 || length > buffer.remaining() - 4) throw new IOException("Truncated chunk");
+            byte[] data = new byte[length];
+            buffer.get(data);
+            crc.reset();
+            crc.update(png, buffer.position() - length - 4, length + 4);
+            if ((int) crc.getValue() != buffer.getInt()) throw new IOException("Invalid chunk CRC");
+            switch (type) {
+                case IHDR -> {
+                    ByteBuffer header = ByteBuffer.wrap(data);
+                    width = header.getInt();
+                    height = header.getInt();
+                    bitDepth = header.get();
+                    colorType = header.get();
+                    if (header.get() != 0 || header.get() != 0) throw new IOException("Unknown compression or filter method");
+                    interlace = header.get();
+                }
+                case PLTE -> palette = data;
+                case TRNS -> transparency = data;
+                case IDAT -> imageData.write(data);
+                case ACTL -> {
+                    return null; // Animated, the other frames would be lost
+                }
+                case IEND -> {
+                    return decode(width, height, bitDepth, colorType, interlace, palette, transparency, imageData.toByteArray());
+                }
+                default -> {
+                    if ((type & 0x20000000) == 0) throw new IOException("Unknown critical chunk");
+                }
+            }
+        }
+    }
+
+    private static @NotNull Pixels decode(int width, int height, int bitDepth, int colorType, int interlace, byte @Nullable [] palette,
+                                          byte @Nullable [] transparency, byte[] imageData) throws IOException, DataFormatException {
+        if (width <= 0 || height <= 0 || (long) width * height > MAX_PIXELS) throw new IOException("Unsupported size");
+        if (interlace != 0 && interlace != 1) throw new IOException("Unknown interlace method");
+        boolean validDepth = switch (colorType) {
+            case GRAYSCALE -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+            case INDEXED -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+            case RGB, GRAYSCALE_ALPHA, RGBA -> bitDepth == 8 || bitDepth == 16;
+            default -> false;
+        };
+        if (!validDepth) throw new IOException("Invalid colour type or bit depth");
+        if (colorType == INDEXED && palette == null) throw new IOException("Missing palette");
+
+        int passes = interlace == 1 ? 7 : 1;
+        int bitsPerPixel = CHANNELS[colorType] * bitDepth;
+        int bytesPerPixel = Math.max(1, bitsPerPixel / 8);
+        long rawSize = 0;
+        for (int pass = 0; pass < passes; pass++) {
+            int passWidth = passSize(width, interlace, pass, ADAM7_X, ADAM7_DX);
+            int passHeight = passSize(height, interlace, pass, ADAM7_Y, ADAM7_DY);
+            if (passWidth > 0 && passHeight > 0) rawSize += ((passWidth * (long) bitsPerPixel + 7) / 8 + 1) * passHeight;
+        }
+        byte[] raw = new byte[Math.toIntExact(rawSize)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(imageData);
+            int read = 0;
+            while (read < raw.length) {
+                int count = inflater.inflate(raw, read, raw.length - read);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated image data");
+                }
+                read += count;
+            }
+        } finally {
+            inflater.end();
+        }
+
+        int max = bitDepth == 16 ? 0xFFFF : 0xFF;
+        int key = -1;
+        long rgbKey = -1;
+        if (transparency != null && colorType == GRAYSCALE && transparency.length >= 2) {
+            key = (transparency[0] & 0xFF) << 8 | transparency[1] & 0xFF;
+        } else if (transparency != null && colorType == RGB && transparency.length >= 6) {
+            rgbKey = (long) ((transparency[0] & 0xFF) << 8 | transparency[1] & 0xFF) << 32
+                    | (long) ((transparency[2] & 0xFF) << 8 | transparency[3] & 0xFF) << 16
+                    | (transparency[4] & 0xFF) << 8 | transparency[5] & 0xFF;
+        }
+
+        int[] samples = new int[width * height * 4];
+        int position = 0;
+        for (int pass = 0; pass < passes; pass++) {
+            int passWidth = passSize(width, interlace, pass, ADAM7_X, ADAM7_DX);
+            int passHeight = passSize(height, interlace, pass, ADAM7_Y, ADAM7_DY);
+            if (passWidth == 0 || passHeight == 0) continue;
+            int rowBytes = (passWidth * bitsPerPixel + 7) / 8;
+            byte[] previous = new byte[rowBytes];
+            byte[] row = new byte[rowBytes];
+            for (int y = 0; y < passHeight; y++) {
+                int filter = raw[position++];
+                System.arraycopy(raw, position, row, 0, rowBytes);
+                position += rowBytes;
+                unfilter(filter, row, previous, bytesPerPixel);
+                int pixelY = interlace == 1 ? ADAM7_Y[pass] + y * ADAM7_DY[pass] : y;
+                for (int x = 0; x < passWidth; x++) {
+                    int pixelX = interlace == 1 ? ADAM7_X[pass] + x * ADAM7_DX[pass] : x;
+                    int i = (pixelY * width + pixelX) * 4;
+                    switch (colorType) {
+                        case GRAYSCALE -> {
+                            int value = sample(row, x, bitDepth);
+                            int gray = bitDepth < 8 ? value * 0xFF / ((1 << bitDepth) - 1) : value;
+                            set(samples, i, gray, gray, gray, value == key ? 0 : max);
+                        }
+                        case RGB -> {
+                            int red = sample(row, x * 3, bitDepth);
+                            int green = sample(row, x * 3 + 1, bitDepth);
+                            int blue = sample(row, x * 3 + 2, bitDepth);
+                            boolean transparent = ((long) red << 32 | (long) green << 16 | blue) == rgbKey;
+                            set(samples, i, red, green, blue, transparent ? 0 : max);
+                        }
+                        case INDEXED -> {
+                            int index = sample(row, x, bitDepth);
+                            if (index * 3 + 2 >= palette.length) throw new IOException("Palette index out of range");
+                            int alpha = transparency != null && index < transparency.length ? transparency[index] & 0xFF : 0xFF;
+                            set(samples, i, palette[index * 3] & 0xFF, palette[index * 3 + 1] & 0xFF, palette[index * 3 + 2] & 0xFF, alpha);
+                        }
+                        case GRAYSCALE_ALPHA -> {
+                            int gray = sample(row, x * 2, bitDepth);
+                            set(samples, i, gray, gray, gray, sample(row, x * 2 + 1, bitDepth));
+                        }
+                        default -> set(samples, i, sample(row, x * 4, bitDepth), sample(row, x * 4 + 1, bitDepth),
+                                sample(row, x * 4 + 2, bitDepth), sample(row, x * 4 + 3, bitDepth));
+                    }
+                }
+                byte[] swap = previous;
+                previous = row;
+                row = swap;
+            }
+        }
+
+        boolean wide = bitDepth == 16;
+        boolean narrowable = wide;
+        for (int i = 0; i < samples.length; i += 4) {
+            if (samples[i + 3] == 0) samples[i] = samples[i + 1] = samples[i + 2] = 0;
+            if (narrowable) {
+                for (int c = 0; c < 4; c++) {
+                    if (samples[i + c] >>> 8 != (samples[i + c] & 0xFF)) narrowable = false;
+                }
+            }
+        }
+        if (narrowable) { // 16 bits samples holding 8 bits values
+            for (int i = 0; i < samples.length; i++) samples[i] >>>= 8;
+            wide = false;
+        }
+        return new Pixels(width, height, wide, samples);
+    }
+
+    private static int passSize(int size, int interlace, int pass, int[] start, int[] step) {
+        if (interlace == 0) return size;
+        return Math.max(0, (size - start[pass] + step[pass] - 1) / step[pass]);
+    }
+
+    private static void set(int[] samples, int i, int red, int green, int blue, int alpha) {
+        samples[i] = red;
+        samples[i + 1] = green;
+        samples[i + 2] = blue;
+        samples[i + 3] = alpha;
+    }
+
+    private static int sample(byte[] row, int index, int bitDepth) {
+        return switch (bitDepth) {
+            case 16 -> (row[index * 2] & 0xFF) << 8 | row[index * 2 + 1] & 0xFF;
+            case 8 -> row[index] & 0xFF;
+            default -> {
+                int bit = index * bitDepth;
+                yield (row[bit >> 3] & 0xFF) >> (8 - bitDepth - (bit & 7)) & (1 << bitDepth) - 1;
+            }
+        };
+    }
+
+    private static void unfilter(int filter, byte[] row, byte[] previous, int bytesPerPixel) throws IOException {
+        switch (filter) {
+            case 0 -> {
+            }
+            case 1 -> {
+                for (int i = bytesPerPixel; i < row.length; i++) row[i] += row[i - bytesPerPixel];
+            }
+            case 2 -> {
+                for (int i = 0; i < row.length; i++) row[i] += previous[i];
+            }
+            case 3 -> {
+                for (int i = 0; i < row.length; i++) {
+                    int left = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+                    row[i] += (byte) ((left + (previous[i] & 0xFF)) >>> 1);
+                }
+            }
+            case 4 -> {
+                for (int i = 0; i < row.length; i++) {
+                    int left = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+                    int upLeft = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xFF : 0;
+                    row[i] += (byte) paeth(left, previous[i] & 0xFF, upLeft);
+                }
+            }
+            default -> throw new IOException("Unknown filter type: " + filter);
+        }
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int leftDistance = Math.abs(estimate - left);
+        int upDistance = Math.abs(estimate - up);
+        int upLeftDistance = Math.abs(estimate - upLeft);
+        if (leftDistance <= upDistance && leftDistance <= upLeftDistance) return left;
+        return upDistance <= upLeftDistance ? up : upLeft;
+    }
+
+    /**
+     * @return the formats able to hold the pixels without losing anything
+     */
+    private static @NotNull List<Format> formats(@NotNull Pixels pixels) {
+        int[] samples = pixels.samples();
+        int max = pixels.wide() ? 0xFFFF : 0xFF;
+        boolean gray = true;
+        boolean opaque = true;
+        boolean binaryAlpha = true;
+        IntLinkedOpenHashSet colors = pixels.wide() ? null : new IntLinkedOpenHashSet();
+        for (int i = 0; i < samples.length; i += 4) {
+            if (samples[i] != samples[i + 1] || samples[i + 1] != samples[i + 2]) gray = false;
+            if (samples[i + 3] != max) {
+                opaque = false;
+                if (samples[i + 3] != 0) binaryAlpha = false;
+            }
+            if (colors != null) {
+                colors.add(samples[i + 3] << 24 | samples[i] << 16 | samples[i + 1] << 8 | samples[i + 2]);
+                if (colors.size() > 256) colors = null;
+            }
+        }
+
+        List<Format> formats = new ObjectArrayList<>(2);
+        if (colors != null) formats.add(indexed(colors));
+        if (gray) {
+            Format format = opaque || binaryAlpha ? grayscale(pixels, opaque) : null;
+            formats.add(format != null ? format : new Format(GRAYSCALE_ALPHA, pixels.wide() ? 16 : 8, null, null));
+        } else {
+            int[] key = opaque || !binaryAlpha ? null : rgbKey(pixels);
+            if (opaque) formats.add(new Format(RGB, pixels.wide() ? 16 : 8, null, null));
+            else if (key != null) formats.add(new Format(RGB, pixels.wide() ? 16 : 8, null, key));
+            else formats.add(new Format(RGBA, pixels.wide() ? 16 : 8, null, null));
+        }
+        return formats;
+    }
+
+    private static @NotNull Format indexed(@NotNull IntLinkedOpenHashSet colors) {
+        // The translucent colours first, the alpha of the following ones is not stored
+        IntArrayList palette = new IntArrayList(colors.size());
+        colors.forEach(color -> {
+            if (color >>> 24 != 0xFF) palette.add(color);
+        });
+        colors.forEach(color -> {
+            if (color >>> 24 == 0xFF) palette.add(color);
+        });
+        int size = palette.size();
+        int bitDepth = size <= 2 ? 1 : size <= 4 ? 2 : size <= 16 ? 4 : 8;
+        return new Format(INDEXED, bitDepth, palette.toIntArray(), null);
+    }
+
+    /**
+     * @return the grayscale format with the lowest bit depth, or {@code null} if no colour is free to be the transparent one
+     */
+    private static @Nullable Format grayscale(@NotNull Pixels pixels, boolean opaque) {
+        int[] samples = pixels.samples();
+        boolean[] used = new boolean[pixels.wide() ? 0x10000 : 0x100];
+        for (int i = 0; i < samples.length; i += 4) {
+            if (samples[i + 3] != 0) used[samples[i]] = true;
+        }
+        int[] depths = pixels.wide() ? new int[]{16} : new int[]{1, 2, 4, 8};
+        for (int bitDepth : depths) {
+            int scale = bitDepth < 8 ? 0xFF / ((1 << bitDepth) - 1) : 1;
+            boolean fits = true;
+            for (int value = 0; value < used.length && fits; value++) {
+                if (used[value] && value % scale != 0) fits = false;
+            }
+            if (!fits) continue;
+            if (opaque) return new Format(GRAYSCALE, bitDepth, null, null);
+            for (int value = 0; value < 1 << bitDepth; value++) {
+                if (!used[value * scale]) return new Format(GRAYSCALE, bitDepth, null, new int[]{value});
+            }
+        }
+        return null;
+    }
+
+    private static int @Nullable [] rgbKey(@NotNull Pixels pixels) {
+        int[] samples = pixels.samples();
+        LongOpenHashSet used = new LongOpenHashSet();
+        for (int i = 0; i < samples.length; i += 4) {
+            if (samples[i + 3] != 0) used.add((long) samples[i] << 32 | (long) samples[i + 1] << 16 | samples[i + 2]);
+        }
+        for (int red = 0; red < 0x100; red++) {
+            for (int green = 0; green < 0x100; green++) {
+                if (!used.contains((long) red << 32 | (long) green << 16)) return new int[]{red, green, 0};
+            }
+        }
+        return null;
+    }
+
+    private static byte @NotNull [] encode(@NotNull Pixels pixels, @NotNull Format format) throws IOException {
+        int width = pixels.width();
+        int height = pixels.height();
+        int bitsPerPixel = CHANNELS[format.colorType()] * format.bitDepth();
+        int rowBytes = (width * bitsPerPixel + 7) / 8;
+        byte[] raw = pack(pixels, format, rowBytes);
+
+        int bytesPerPixel = Math.max(1, bitsPerPixel / 8);
+        int[] filters = raw.length > LARGE_IMAGE ? new int[]{0, ADAPTIVE_FILTER} : new int[]{0, 1, 2, 3, 4, ADAPTIVE_FILTER};
+        byte[] imageData = null;
+        for (int filter : filters) {
+            byte[] filtered = filter(raw, rowBytes, height, bytesPerPixel, filter);
+            for (int strategy : new int[]{Deflater.DEFAULT_STRATEGY, Deflater.FILTERED}) {
+                byte[] deflated = deflate(filtered, strategy);
+                if (imageData == null || deflated.length < imageData.length) imageData = deflated;
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(imageData.length + 1024);
+        out.write(SIGNATURE);
+        ByteBuffer header = ByteBuffer.allocate(13)
+                .putInt(width)
+                .putInt(height)
+                .put((byte) format.bitDepth())
+                .put((byte) format.colorType())
+                .put((byte) 0) // Compression method
+                .put((byte) 0) // Filter method
+                .put((byte) 0); // Interlace method
+        writeChunk(out, IHDR, header.array());
+        int[] palette = format.palette();
+        if (palette != null) {
+            byte[] colors = new byte[palette.length * 3];
+            int translucent = 0;
+            for (int i = 0; i < palette.length; i++) {
+                colors[i * 3] = (byte) (palette[i] >> 16);
+                colors[i * 3 + 1] = (byte) (palette[i] >> 8);
+                colors[i * 3 + 2] = (byte) palette[i];
+                if (palette[i] >>> 24 != 0xFF) translucent = i + 1;
+            }
+            writeChunk(out, PLTE, colors);
+            if (translucent > 0) {
+                byte[] alphas = new byte[translucent];
+                for (int i = 0; i < translucent; i++) alphas[i] = (byte) (palette[i] >>> 24);
+                writeChunk(out, TRNS, alphas);
+            }
+        }
+        int[] key = format.key();
+        if (key != null) {
+            ByteBuffer transparency = ByteBuffer.allocate(key.length * 2);
+            for (int value : key) transparency.putShort((short) value);
+            writeChunk(out, TRNS, transparency.array());
+        }
+        writeChunk(out, IDAT, imageData);
+        writeChunk(out, IEND, new byte[0]);
+        return out.toByteArray();
+    }
+
+    private static byte @NotNull [] pack(@NotNull Pixels pixels, @NotNull Format format, int rowBytes) {
+        int[] samples = pixels.samples();
+        int width = pixels.width();
+        int bitDepth = format.bitDepth();
+        int[] key = format.key();
+        int scale = format.colorType() == GRAYSCALE && bitDepth < 8 ? 0xFF / ((1 << bitDepth) - 1) : 1;
+        Int2IntOpenHashMap indexes = null;
+        if (format.palette() != null) {
+            indexes = new Int2IntOpenHashMap(format.palette().length);
+            for (int i = 0; i < format.palette().length; i++) indexes.put(format.palette()[i], i);
+        }
+        byte[] raw = new byte[rowBytes * pixels.height()];
+        for (int y = 0; y < pixels.height(); y++) {
+            int offset = y * rowBytes;
+            for (int x = 0; x < width; x++) {
+                int i = (y * width + x) * 4;
+                boolean transparent = samples[i + 3] == 0 && key != null;
+                switch (format.colorType()) {
+                    case INDEXED -> put(raw, offset, x, bitDepth, indexes.get(samples[i + 3] << 24 | samples[i] << 16 | samples[i + 1] << 8 | samples[i + 2]));
+                    case GRAYSCALE -> put(raw, offset, x, bitDepth, transparent ? key[0] : samples[i] / scale);
+                    case GRAYSCALE_ALPHA -> {
+                        put(raw, offset, x * 2, bitDepth, samples[i]);
+                        put(raw, offset, x * 2 + 1, bitDepth, samples[i + 3]);
+                    }
+                    case RGB -> {
+                        for (int c = 0; c < 3; c++) put(raw, offset, x * 3 + c, bitDepth, transparent ? key[c] : samples[i + c]);
+                    }
+                    default -> {
+                        for (int c = 0; c < 4; c++) put(raw, offset, x * 4 + c, bitDepth, samples[i + c]);
+                    }
+                }
+            }
+        }
+        return raw;
+    }
+
+    private static void put(byte[] raw, int offset, int index, int bitDepth, int value) {
+        switch (bitDepth) {
+            case 16 -> {
+                raw[offset + index * 2] = (byte) (value >> 8);
+                raw[offset + index * 2 + 1] = (byte) value;
+            }
+            case 8 -> raw[offset + index] = (byte) value;
+            default -> {
+                int bit = index * bitDepth;
+                raw[offset + (bit >> 3)] |= (byte) (value << (8 - bitDepth - (bit & 7)));
+            }
+        }
+    }
+
+    private static byte @NotNull [] filter(byte[] raw, int rowBytes, int height, int bytesPerPixel, int strategy) {
+        byte[] filtered = new byte[(rowBytes + 1) * height];
+        byte[] candidate = strategy == ADAPTIVE_FILTER ? new byte[rowBytes] : null;
+        for (int y = 0; y < height; y++) {
+            int offset = y * rowBytes;
+            int previous = y > 0 ? offset - rowBytes : -1;
+            int out = y * (rowBytes + 1);
+            if (candidate == null) {
+                filtered[out] = (byte) strategy;
+                filterRow(strategy, raw, offset, previous, rowBytes, bytesPerPixel, filtered, out + 1);
+                continue;
+            }
+            long bestSum = Long.MAX_VALUE;
+            for (int type = 0; type < 5; type++) {
+                filterRow(type, raw, offset, previous, rowBytes, bytesPerPixel, candidate, 0);
+                long sum = 0;
+                for (byte value : candidate) sum += Math.abs(value);
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    filtered[out] = (byte) type;
+                    System.arraycopy(candidate, 0, filtered, out + 1, rowBytes);
+                }
+            }
+        }
+        return filtered;
+    }
+
+    private static void filterRow(int type, byte[] raw, int offset, int previous, int rowBytes, int bytesPerPixel, byte[] out, int outOffset) {
+        for (int i = 0; i < rowBytes; i++) {
+            int value = raw[offset + i] & 0xFF;
+            int left = i >= bytesPerPixel ? raw[offset + i - bytesPerPixel] & 0xFF : 0;
+            int up = previous >= 0 ? raw[previous + i] & 0xFF : 0;
+            int upLeft = previous >= 0 && i >= bytesPerPixel ? raw[previous + i - bytesPerPixel] & 0xFF : 0;
+            out[outOffset + i] = (byte) switch (type) {
+                case 0 -> value;
+                case 1 -> value - left;
+                case 2 -> value - up;
+                case 3 -> value - ((left + up) >>> 1);
+                default -> value - paeth(left, up, upLeft);
+            };
+        }
+    }
+
+    private static byte @NotNull [] deflate(byte[] data, int strategy) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setStrategy(strategy);
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeChunk(@NotNull ByteArrayOutputStream out, int type, byte[] data) {
+        ByteBuffer chunk = ByteBuffer.allocate(data.length + 12)
+                .putInt(data.length)
+                .putInt(type)
+                .put(data);
+        CRC32 crc = new CRC32();
+        crc.update(chunk.array(), 4, data.length + 4);
+        chunk.putInt((int) crc.getValue());
+        out.write(chunk.array(), 0, chunk.capacity());
+    }
+}
@@ -2,6 +2,7 @@ package dev.lost.furnace.utils;
 
 import dev.lost.furnace.libs.jtar.TarEntry;
 import dev.lost.furnace.libs.jtar.TarInputStream;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -9,9 +10,17 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -19,32 +28,113 @@ import java.util.zip.ZipInputStream;
 public class PngOptimizer {
 
     public static @Nullable Path EXE;
+    public static @Nullable PngOptimizerCache CACHE;
+    /**
+     * How many PNGs are optimised at the same time during a build
+     */
+    public static int THREADS = Runtime.getRuntime().availableProcessors();
+    /**
+     * How long oxipng can take on a single PNG before it is stopped and the PNG kept as it is
+     */
+    public static long TIMEOUT_SECONDS = 60;
+    /**
+     * Where the warnings of the PNG optimisation go, set it to the logger of the application using Furnace
+     */
+    public static Logger LOGGER = Logger.getLogger("Furnace");
+
+    private static final String[] ARGS = {"-o", "max", "-s", "-a", "-Z"};
+    private static @Nullable Path versionExe;
+    private static @Nullable String version;
 
     public static byte[] optimise(byte[] png) {
         if (EXE == null || !Files.exists(EXE)) {
             return png;
         }
+        PngOptimizerCache cache = CACHE;
+        String key = cache != null ? cacheKey(EXE, png) : null;
+        if (key != null) {
+            byte[] cached = cache.get(key);
+            if (cached != null) return cached;
+        }
+        Path in = null;
+        Path out = null;
+        Process process = null;
         try {
-            Path in = Files.createTempFile("orig", ".png");
-            Path out = Files.createTempFile("opt", ".png");
+            in = Files.createTempFile("orig", ".png");
+            out = Files.createTempFile("opt", ".png");
             Files.write(in, png);
 
-            new ProcessBuilder(EXE.toString(), "-o", "max", "-s", "-a", "-Z", "--out", out.toString(), in.toString())
+            List<String> command = new ObjectArrayList<>(ARGS.length + 4);
+            command.add(EXE.toString());
+            command.addAll(Arrays.asList(ARGS));
+            command.addAll(List.of("--out", out.toString(), in.toString()));
+            process = new ProcessBuilder(command)
                     .redirectError(ProcessBuilder.Redirect.DISCARD)
                     .redirectOutput(ProcessBuilder.Redirect.DISCARD)
-                    .start()
-                    .onExit()
-                    .get();
+                    .start();
+            if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor(); // The output may be incomplete, the original is kept
+                return png;
+            }
 
             byte[] bytes = Files.readAllBytes(out);
-            Files.deleteIfExists(in);
-            Files.deleteIfExists(out);
-
-            return bytes.length < png.length ? bytes : png;
+            byte[] result = bytes.length > 0 && bytes.length < png.length ? bytes : png;
+            if (key != null && process.exitValue() == 0) cache.put(key, result);
+            return result;
 
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            return png;
         } catch (Exception ignored) {
             return png;
+        } finally {
+            deleteQuietly(in);
+            deleteQuietly(out);
+        }
+    }
+
+    private static void deleteQuietly(@Nullable Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the PNG, the oxipng version and its arguments, or {@code null} if the version cannot be known
+     */
+    private static @Nullable String cacheKey(@NotNull Path exe, byte[] png) {
+        String exeVersion = version(exe);
+        if (exeVersion == null) return null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(png);
+            digest.update((exeVersion + '\0' + String.join(" ", ARGS)).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static synchronized @Nullable String version(@NotNull Path exe) {
+        if (!exe.equals(versionExe)) {
+            versionExe = exe;
+            try {
+                Process process = new ProcessBuilder(exe.toString(), "--version")
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+                version = process.waitFor() == 0 && !output.isEmpty() ? output : null;
+            } catch (IOException e) {
+                version = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                version = null;
+            }
         }
+        return version;
     }
 
     public static void downloadOxipng(@NotNull Path target) throws IOException {
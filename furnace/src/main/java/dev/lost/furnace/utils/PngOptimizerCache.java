@@ -0,0 +1,143 @@
+package dev.lost.furnace.utils;
+
+import it.unimi.dsi.fastutil.objects.Object2LongLinkedOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of optimised PNGs, one file per key, the least recently used ones are deleted once the cache is bigger than
+ * its maximum size. The last modified time of the files is their last use so the order survives restarts.
+ */
+public class PngOptimizerCache {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final Path directory;
+    private final long maxSize;
+    private final Object2LongLinkedOpenHashMap<String> sizes = new Object2LongLinkedOpenHashMap<>(); // From least to most recently used
+    private long size = 0;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public PngOptimizerCache(@NotNull Path directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted(Comparator.comparing(PngOptimizerCache::lastModified)).toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".png")) {
+                    long fileSize = Files.size(file);
+                    sizes.put(name.substring(0, name.length() - 4), fileSize);
+                    size += fileSize;
+                } else if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file); // Left by a crash while it was written
+                }
+            }
+        }
+        synchronized (this) {
+            evict();
+        }
+    }
+
+    /**
+     * @return the cached bytes, or {@code null} if there are none
+     */
+    public byte @Nullable [] get(@NotNull String key) {
+        synchronized (this) {
+            if (!sizes.containsKey(key)) {
+                misses.incrementAndGet();
+                return null;
+            }
+            sizes.getAndMoveToLast(key);
+        }
+        Path file = file(key);
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            if (bytes.length < PNG_SIGNATURE.length || !Arrays.equals(bytes, 0, PNG_SIGNATURE.length, PNG_SIGNATURE, 0, PNG_SIGNATURE.length)) {
+                throw new IOException("Not a PNG: " + file);
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return bytes;
+        } catch (IOException e) {
+            remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    public void put(@NotNull String key, byte @NotNull [] bytes) {
+        Path target = file(key);
+        try {
+            // Written next to its final place then moved, a crash never leaves a partial entry
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                Files.write(tmp, bytes);
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            return; // The entry is optimised again next time
+        }
+        synchronized (this) {
+            size += bytes.length - sizes.putAndMoveToLast(key, bytes.length);
+            evict();
+        }
+    }
+
+    public int hits() {
+        return hits.get();
+    }
+
+    public int misses() {
+        return misses.get();
+    }
+
+    private void evict() {
+        while (size > maxSize && !sizes.isEmpty()) {
+            String key = sizes.firstKey();
+            size -= sizes.removeLong(key);
+            try {
+                Files.deleteIfExists(file(key));
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private synchronized void remove(@NotNull String key) {
+        if (sizes.containsKey(key)) size -= sizes.removeLong(key);
+        try {
+            Files.deleteIfExists(file(key));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private @NotNull Path file(@NotNull String key) {
+        return directory.resolve(key + ".png");
+    }
+
+    private static @NotNull FileTime lastModified(@NotNull Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -3,26 +3,43 @@ package dev.lost.furnace;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import dev.lost.furnace.files.manifest.Manifest;
+import dev.lost.furnace.files.model.Model;
 import dev.lost.furnace.files.texture.Texture;
 import dev.lost.furnace.files.unknown.UnknownFile;
 import dev.lost.furnace.resourcepack.BedrockResourcePack;
+import dev.lost.furnace.resourcepack.JavaResourcePack;
 import dev.lost.furnace.resourcepackbuilder.ResourcePackBuilder;
+import dev.lost.furnace.resourcepackbuilder.ResourcePackBuilderImpl;
+import dev.lost.furnace.utils.JavaPngOptimizer;
 import dev.lost.furnace.utils.PngOptimizer;
+import dev.lost.furnace.utils.PngOptimizerCache;
 import org.junit.jupiter.api.*;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -161,6 +178,158 @@ public class BedrockResourcePackTests {
         }
     }
 
+    @Order(4)
+    @Test
+    void testIncrementalPackBuild() throws Exception {
+        System.out.println("Creating resource pack...");
+        BedrockResourcePack pack = BedrockResourcePack.resourcePack();
+        pack.manifest("Test Pack", "Test Description");
+        pack.jsonFile("texts/example.json", JsonParser.parseString("{\"test\": true}"));
+        pack.texture(Texture.bytes("textures/example.png", pngBytes(16, 16)));
+        pack.unknownFile(UnknownFile.utf8("extras/readme.txt", "First build"));
+
+        File tmpPack = Files.createTempFile("pack-incremental", ".mcpack").toFile();
+        File manifest = new File(tmpPack.getPath() + ".manifest.json");
+        try {
+            System.out.println("Building resource pack twice, changing one file in between...");
+            pack.build(tmpPack, ResourcePackBuilder.BuildOptions.COMPRESSED);
+            assertTrue(manifest.isFile(), "The build manifest should be written next to the pack");
+            byte[] firstPng = readZipEntry(tmpPack, "textures/example.png");
+
+            pack.unknownFile(UnknownFile.utf8("extras/readme.txt", "Second build"));
+            ResourcePackBuilderImpl builder = new ResourcePackBuilderImpl();
+            builder.build(pack, tmpPack, ResourcePackBuilder.BuildOptions.COMPRESSED);
+
+            // The texture and the JSON file, manifest.json gets new UUIDs on every build
+            assertEquals(2, builder.reusedEntries(), "Only the changed files should be compressed again");
+            assertFalse(new File(tmpPack.getPath() + ".tmp").exists(), "The temporary pack should be moved");
+            assertEquals("Second build", new String(readZipEntry(tmpPack, "extras/readme.txt")));
+            assertArrayEquals(firstPng, readZipEntry(tmpPack, "textures/example.png"));
+            assertEquals("{\"test\":true}", new String(readZipEntry(tmpPack, "texts/example.json")));
+            try (ZipFile zipFile = new ZipFile(tmpPack)) {
+                assertEquals(4, zipFile.size(), "The central directory should list every entry");
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            tmpPack.delete();
+            //noinspection ResultOfMethodCallIgnored
+            manifest.delete();
+        }
+    }
+
+    @Order(5)
+    @Test
+    void testPngOptimizerCache() throws Exception {
+        Path directory = Files.createTempDirectory("png-cache");
+        byte[] png = pngBytes(16, 16);
+        try {
+            PngOptimizerCache cache = new PngOptimizerCache(directory, 2L * png.length);
+            assertNull(cache.get("first"));
+            cache.put("first", png);
+            cache.put("second", png);
+            assertArrayEquals(png, cache.get("first"));
+            assertEquals(1, cache.hits());
+            assertEquals(1, cache.misses());
+
+            System.out.println("Adding an entry over the maximum size...");
+            cache.put("third", png);
+            assertNull(cache.get("second"), "The least recently used entry should be evicted");
+            assertArrayEquals(png, cache.get("first"));
+
+            System.out.println("Reopening the cache...");
+            Files.write(directory.resolve("broken.tmp"), new byte[]{1, 2, 3});
+            PngOptimizerCache reopened = new PngOptimizerCache(directory, 2L * png.length);
+            assertArrayEquals(png, reopened.get("third"));
+            assertFalse(Files.exists(directory.resolve("broken.tmp")), "Unfinished writes should be deleted");
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Order(6)
+    @Test
+    void testJavaPngOptimizer() throws Exception {
+        Map<String, BufferedImage> images = testImages();
+        for (Map.Entry<String, BufferedImage> e : images.entrySet()) {
+            byte[] png = e.getKey().equals("interlaced") ? interlacedPngBytes(e.getValue()) : pngBytes(e.getValue());
+            byte[] out = JavaPngOptimizer.optimise(png);
+            System.out.println(e.getKey() + ": original PNG size: " + png.length + ", optimized size: " + out.length);
+            assertTrue(out.length < png.length, e.getKey() + " should be smaller");
+            assertSamePixels(ImageIO.read(new ByteArrayInputStream(png)), ImageIO.read(new ByteArrayInputStream(out)), e.getKey());
+            assertArrayEquals(out, JavaPngOptimizer.optimise(out), e.getKey() + " should not change once optimized");
+        }
+
+        byte[] broken = pngBytes(16, 16);
+        broken[broken.length - 20] ^= 1;
+        assertSame(broken, JavaPngOptimizer.optimise(broken), "A broken PNG should be kept as it is");
+        byte[] notPng = "not a png".getBytes();
+        assertSame(notPng, JavaPngOptimizer.optimise(notPng));
+    }
+
+    @Order(7)
+    @Test
+    void testJavaPngOptimizerAgainstOxipng() throws Exception {
+        Path binDir = Files.createTempDirectory("oxipng-bin");
+        try {
+            try {
+                PngOptimizer.downloadOxipng(binDir);
+            } catch (IOException e) {
+                Assumptions.abort("oxipng cannot be downloaded: " + e);
+            }
+            for (Map.Entry<String, BufferedImage> e : testImages().entrySet()) {
+                byte[] png = pngBytes(e.getValue());
+                int oxipng = PngOptimizer.optimise(png).length;
+                int java = JavaPngOptimizer.optimise(png).length;
+                System.out.println(e.getKey() + ": original PNG size: " + png.length + ", oxipng: " + oxipng + ", in process: " + java);
+                assertTrue(java <= oxipng * 3 / 2, e.getKey() + " should not be much bigger than with oxipng");
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(binDir)) {
+                for (Path file : files.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Order(8)
+    @Test
+    void testDeterministicJavaPackBuild() throws Exception {
+        Random random = new Random(42);
+        StringBuilder big = new StringBuilder();
+        while (big.length() < 1 << 20) big.append("{\"value\":").append(random.nextInt(1000)).append("},");
+        byte[] sound = new byte[300_000];
+        random.nextBytes(sound);
+
+        JavaResourcePack pack = JavaResourcePack.resourcePack();
+        pack.mcmeta(75, "Test Pack");
+        pack.model(Model.model("assets/test/models/block/example.json").parent("block/cube_all").texture("all", "test:block/example"));
+        pack.texture(Texture.bytes("assets/test/textures/block/example.png", pngBytes(16, 16)));
+        pack.unknownFile(UnknownFile.utf8("assets/test/big.txt", big.toString()));
+        pack.unknownFile(UnknownFile.bytes("assets/test/sounds/example.ogg", sound));
+
+        File first = Files.createTempFile("pack-first", ".zip").toFile();
+        File second = Files.createTempFile("pack-second", ".zip").toFile();
+        try {
+            System.out.println("Building the same resource pack twice...");
+            pack.build(first, ResourcePackBuilder.BuildOptions.MAX_COMPRESSION_IN_PROCESS);
+            pack.build(second, ResourcePackBuilder.BuildOptions.MAX_COMPRESSION_IN_PROCESS);
+            assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()), "Identical packs should give identical zips");
+
+            try (ZipFile zipFile = new ZipFile(first)) {
+                assertEquals(big.toString(), new String(zipFile.getInputStream(zipFile.getEntry("assets/test/big.txt")).readAllBytes()));
+                assertArrayEquals(sound, zipFile.getInputStream(zipFile.getEntry("assets/test/sounds/example.ogg")).readAllBytes());
+                assertTrue(zipFile.getEntry("assets/test/big.txt").getCompressedSize() < big.length() / 4, "Split entries should still be compressed");
+            }
+        } finally {
+            for (File file : new File[]{first, second}) {
+                Files.deleteIfExists(file.toPath());
+                Files.deleteIfExists(new File(file.getPath() + ".manifest.json").toPath());
+            }
+        }
+    }
+
     private static byte[] readZipEntry(File zipFile, String entryName) throws IOException {
         try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipFile.toPath()))) {
             ZipEntry ze;
@@ -198,9 +367,91 @@ public class BedrockResourcePackTests {
             }
         }
 
+        return pngBytes(img);
+    }
+
+    private static byte[] pngBytes(BufferedImage image) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(img, "png", baos);
+        ImageIO.write(image, "png", baos);
         return baos.toByteArray();
     }
 
+    private static byte[] interlacedPngBytes(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(baos)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return baos.toByteArray();
+    }
+
+    private static Map<String, BufferedImage> testImages() {
+        Map<String, BufferedImage> images = new LinkedHashMap<>();
+        Random random = new Random(42);
+
+        BufferedImage palette = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        int[] colors = new int[17];
+        for (int i = 0; i < 16; i++) colors[i] = 0xFF000000 | random.nextInt(0x1000000);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) palette.setRGB(x, y, colors[random.nextInt(colors.length)]);
+        }
+        images.put("palette", palette);
+        images.put("interlaced", palette);
+
+        BufferedImage rgb = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage rgba = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                int color = x * 4 << 16 | y * 4 << 8 | (x + y) * 2;
+                rgb.setRGB(x, y, 0xFF000000 | color);
+                rgba.setRGB(x, y, (x + y) * 2 << 24 | color);
+            }
+        }
+        images.put("rgb", rgb);
+        images.put("rgba", rgba);
+
+        BufferedImage gray = new BufferedImage(64, 64, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) gray.getRaster().setSample(x, y, 0, (x / 16) * 85);
+        }
+        images.put("gray", gray);
+
+        BufferedImage wide = new BufferedImage(64, 64, BufferedImage.TYPE_USHORT_GRAY);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) wide.getRaster().setSample(x, y, 0, (x * 4) * 257);
+        }
+        images.put("16 bits", wide);
+        return images;
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual, String name) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int expectedColor = argb(expected, x, y);
+                int actualColor = argb(actual, x, y);
+                if (expectedColor >>> 24 == 0 && actualColor >>> 24 == 0) continue; // The colour of transparent pixels is not kept
+                assertEquals(expectedColor, actualColor, name + " pixel " + x + ", " + y);
+            }
+        }
+    }
+
+    /**
+     * The grayscale images are read in a linear colour space, their samples are compared instead
+     */
+    private static int argb(BufferedImage image, int x, int y) {
+        ColorModel model = image.getColorModel();
+        if (model.getColorSpace().getType() != ColorSpace.TYPE_GRAY) return image.getRGB(x, y);
+        Raster raster = image.getRaster();
+        int gray = raster.getSample(x, y, 0) * 255 / ((1 << model.getComponentSize(0)) - 1);
+        int alpha = model.hasAlpha() ? raster.getSample(x, y, 1) * 255 / ((1 << model.getComponentSize(1)) - 1) : 255;
+        return alpha << 24 | gray << 16 | gray << 8 | gray;
+    }
+
 }
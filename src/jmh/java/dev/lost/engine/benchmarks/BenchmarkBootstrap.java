@@ -0,0 +1,46 @@
+package dev.lost.engine.benchmarks;
+
+import dev.lost.engine.customblocks.BlockStateRemapper;
+import dev.lost.engine.items.ItemInjector;
+import dev.lost.engine.listeners.ClientToolTable;
+import dev.lost.engine.listeners.PacketListener;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Boots Minecraft the same way {@link dev.lost.engine.bootstrap.LostEngineBootstrap} does: the custom items are
+ * registered before the registries are frozen.
+ */
+public class BenchmarkBootstrap {
+
+    private static Item customItem;
+
+    public static synchronized void bootstrap() {
+        if (customItem != null) return;
+        SharedConstants.tryDetectVersion();
+        //noinspection unused -- Force class loading so the vanilla items are registered first
+        final Item air = Items.AIR;
+        customItem = ItemInjector.registerItem("lost_engine:benchmark_item", new Item.Properties());
+        Bootstrap.bootStrap();
+        BlockStateRemapper.rebuild();
+        ClientToolTable.rebuild();
+        PacketListener.registerRewriters();
+    }
+
+    public static @NotNull Item customItem() {
+        bootstrap();
+        return customItem;
+    }
+
+    /**
+     * @return a channel with the LostEngine handler, packets written to it go through the clientbound rewriters
+     */
+    public static @NotNull EmbeddedChannel channel() {
+        bootstrap();
+        return new EmbeddedChannel(new PacketListener.ChannelDupeHandler());
+    }
+}
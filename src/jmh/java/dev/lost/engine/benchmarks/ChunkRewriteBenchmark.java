@@ -0,0 +1,125 @@
+package dev.lost.engine.benchmarks;
+
+import dev.lost.engine.listeners.ChunkPayloadRewriter;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.HugeMushroomBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites a 24 sections (overworld) chunk payload, the payload is serialized by hand in the network section format.
+ * <ul>
+ *     <li>{@code vanilla}: indirect palettes without anything to translate</li>
+ *     <li>{@code mushroom}: indirect palettes full of non-default mushroom block states</li>
+ *     <li>{@code global}: global palette sections mixing vanilla and mushroom states</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkRewriteBenchmark {
+
+    private static final int SECTIONS = 24;
+    private static final int BLOCKS_PER_SECTION = 4096;
+    private static final int GLOBAL_BITS = 15;
+
+    @Param({"vanilla", "mushroom", "global"})
+    public String chunk;
+
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkBootstrap.bootstrap();
+        Random random = new Random(0);
+        IntArrayList vanilla = ids(Blocks.STONE, Blocks.DIRT, Blocks.GRASS_BLOCK, Blocks.DEEPSLATE, Blocks.WATER, Blocks.OAK_LOG, Blocks.COAL_ORE, Blocks.GRAVEL);
+        IntArrayList mushrooms = new IntArrayList();
+        for (Block block : new Block[]{Blocks.BROWN_MUSHROOM_BLOCK, Blocks.RED_MUSHROOM_BLOCK, Blocks.MUSHROOM_STEM}) {
+            BlockState state = block.defaultBlockState().setValue(HugeMushroomBlock.DOWN, false);
+            mushrooms.add(Block.getId(state));
+            mushrooms.add(Block.getId(state.setValue(HugeMushroomBlock.UP, false)));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int section = 0; section < SECTIONS; section++) {
+            out.writeShort(BLOCKS_PER_SECTION);
+            switch (chunk) {
+                case "vanilla" -> writeIndirect(out, vanilla, random);
+                case "mushroom" -> {
+                    IntArrayList palette = new IntArrayList(vanilla.subList(0, 2));
+                    palette.addAll(mushrooms);
+                    writeIndirect(out, palette, random);
+                }
+                case "global" -> {
+                    IntArrayList palette = new IntArrayList(vanilla);
+                    palette.addAll(mushrooms);
+                    writeGlobal(out, palette, random);
+                }
+                default -> throw new IllegalArgumentException("Unknown chunk type: " + chunk);
+            }
+            // Single valued biomes
+            out.writeByte(0);
+            writeVarInt(out, 0);
+        }
+        payload = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] rewrite() {
+        // Never in place so every invocation sees the original payload
+        return ChunkPayloadRewriter.rewrite(payload, SECTIONS, false);
+    }
+
+    private static IntArrayList ids(Block... blocks) {
+        IntArrayList ids = new IntArrayList();
+        for (Block block : blocks) ids.add(Block.getId(block.defaultBlockState()));
+        return ids;
+    }
+
+    private static void writeIndirect(DataOutputStream out, IntArrayList palette, Random random) throws IOException {
+        int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(palette.size() - 1));
+        out.writeByte(bits);
+        writeVarInt(out, palette.size());
+        for (int id : palette) writeVarInt(out, id);
+        writeData(out, bits, palette.size(), random);
+    }
+
+    private static void writeGlobal(DataOutputStream out, IntArrayList ids, Random random) throws IOException {
+        out.writeByte(GLOBAL_BITS);
+        int valuesPerLong = 64 / GLOBAL_BITS;
+        for (int i = 0, longs = (BLOCKS_PER_SECTION + valuesPerLong - 1) / valuesPerLong; i < longs; i++) {
+            long value = 0;
+            for (int j = 0; j < valuesPerLong; j++) {
+                value |= (long) ids.getInt(random.nextInt(ids.size())) << j * GLOBAL_BITS;
+            }
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeData(DataOutputStream out, int bits, int paletteSize, Random random) throws IOException {
+        int valuesPerLong = 64 / bits;
+        for (int i = 0, longs = (BLOCKS_PER_SECTION + valuesPerLong - 1) / valuesPerLong; i < longs; i++) {
+            long value = 0;
+            for (int j = 0; j < valuesPerLong; j++) {
+                value |= (long) random.nextInt(paletteSize) << j * bits;
+            }
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,53 @@
+package dev.lost.engine.benchmarks;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.network.protocol.game.ClientboundContainerSetContentPacket;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Container contents (chest, double chest and player inventory sizes) written through the LostEngine channel handler,
+ * a quarter of the slots are empty, vanilla blocks, vanilla tools and custom items
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContainerContentBenchmark {
+
+    @Param({"27", "54", "90"})
+    public int slots;
+
+    private EmbeddedChannel channel;
+    private ClientboundContainerSetContentPacket packet;
+
+    @Setup
+    public void setup() {
+        channel = BenchmarkBootstrap.channel();
+        List<ItemStack> items = new ObjectArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            items.add(switch (i % 4) {
+                case 0 -> ItemStack.EMPTY;
+                case 1 -> new ItemStack(Items.COBBLESTONE, 64);
+                case 2 -> new ItemStack(Items.IRON_PICKAXE);
+                default -> new ItemStack(BenchmarkBootstrap.customItem());
+            });
+        }
+        packet = new ClientboundContainerSetContentPacket(1, 0, items, ItemStack.EMPTY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public Object rewrite() {
+        channel.writeOutbound(packet);
+        return channel.readOutbound();
+    }
+}
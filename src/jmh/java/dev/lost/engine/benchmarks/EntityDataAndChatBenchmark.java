@@ -0,0 +1,105 @@
+package dev.lost.engine.benchmarks;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.HoverEvent;
+import net.minecraft.network.chat.Style;
+import net.minecraft.network.protocol.game.ClientboundSetEntityDataPacket;
+import net.minecraft.network.protocol.game.ClientboundSystemChatPacket;
+import net.minecraft.network.syncher.EntityDataSerializers;
+import net.minecraft.network.syncher.SynchedEntityData;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.block.Blocks;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity data and system chat packets written through the LostEngine channel handler
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EntityDataAndChatBenchmark {
+
+    private EmbeddedChannel channel;
+    private ClientboundSetEntityDataPacket entityData;
+    private ClientboundSystemChatPacket plainChat;
+    private ClientboundSystemChatPacket vanillaHoverChat;
+    private ClientboundSystemChatPacket customHoverChat;
+    private ClientboundSystemChatPacket entityHoverChat;
+
+    @Setup
+    public void setup() {
+        channel = BenchmarkBootstrap.channel();
+        plainChat = new ClientboundSystemChatPacket(chat(null), false);
+        vanillaHoverChat = new ClientboundSystemChatPacket(chat(new HoverEvent.ShowItem(new ItemStack(Items.DIAMOND))), false);
+        customHoverChat = new ClientboundSystemChatPacket(chat(new HoverEvent.ShowItem(new ItemStack(BenchmarkBootstrap.customItem()))), false);
+        // A custom item hover nested in the name of an entity hover
+        entityHoverChat = new ClientboundSystemChatPacket(chat(new HoverEvent.ShowEntity(new HoverEvent.EntityTooltipInfo(
+                EntityType.ZOMBIE, UUID.randomUUID(), Optional.of(chat(new HoverEvent.ShowItem(new ItemStack(BenchmarkBootstrap.customItem()))))
+        ))), false);
+    }
+
+    /**
+     * A new packet for every call, entity data rewrites are shared between channels by packet instance
+     */
+    @Setup(Level.Invocation)
+    public void newEntityData() {
+        entityData = entityData();
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public Object entityData() {
+        return write(entityData);
+    }
+
+    @Benchmark
+    public Object plainChat() {
+        return write(plainChat);
+    }
+
+    @Benchmark
+    public Object vanillaHoverChat() {
+        return write(vanillaHoverChat);
+    }
+
+    @Benchmark
+    public Object customHoverChat() {
+        return write(customHoverChat);
+    }
+
+    @Benchmark
+    public Object entityHoverChat() {
+        return write(entityHoverChat);
+    }
+
+    private Object write(Object packet) {
+        channel.writeOutbound(packet);
+        return channel.readOutbound();
+    }
+
+    static ClientboundSetEntityDataPacket entityData() {
+        return new ClientboundSetEntityDataPacket(1, List.of(
+                new SynchedEntityData.DataValue<>(8, EntityDataSerializers.ITEM_STACK, new ItemStack(BenchmarkBootstrap.customItem())),
+                new SynchedEntityData.DataValue<>(23, EntityDataSerializers.BLOCK_STATE, Blocks.MUSHROOM_STEM.defaultBlockState()),
+                new SynchedEntityData.DataValue<>(0, EntityDataSerializers.BYTE, (byte) 0)
+        ));
+    }
+
+    private static Component chat(HoverEvent hoverEvent) {
+        return Component.literal("[Server] ")
+                .append(Component.literal("Player").withStyle(Style.EMPTY.withHoverEvent(hoverEvent)))
+                .append(Component.translatable("chat.type.text", Component.literal("a"), Component.literal("b")));
+    }
+}
@@ -0,0 +1,56 @@
+package dev.lost.engine.benchmarks;
+
+import dev.lost.engine.listeners.ClientItemCache;
+import dev.lost.engine.listeners.PacketListener;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PacketListener#editItem(ItemStack, boolean)} on a plain vanilla item, a vanilla tool and a custom item
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ItemRewriteBenchmark {
+
+    @Param({"vanilla", "tool", "custom"})
+    public String item;
+
+    private ItemStack stack;
+
+    @Setup
+    public void setup() {
+        BenchmarkBootstrap.bootstrap();
+        stack = switch (item) {
+            case "vanilla" -> new ItemStack(Items.STONE, 32);
+            case "tool" -> new ItemStack(Items.DIAMOND_PICKAXE);
+            case "custom" -> new ItemStack(BenchmarkBootstrap.customItem(), 3);
+            default -> throw new IllegalArgumentException("Unknown item type: " + item);
+        };
+    }
+
+    @Benchmark
+    public Optional<ItemStack> editItem() {
+        return PacketListener.editItem(stack, false);
+    }
+
+    /**
+     * Empties the item cache before every call, outside of the measured time
+     */
+    @State(Scope.Thread)
+    public static class EmptyCache {
+        @Setup(Level.Invocation)
+        public void invalidate() {
+            ClientItemCache.invalidateAll();
+        }
+    }
+
+    @Benchmark
+    public Optional<ItemStack> editItemUncached(EmptyCache emptyCache) {
+        return PacketListener.editItem(stack, false);
+    }
+}
@@ -0,0 +1,51 @@
+package dev.lost.engine.benchmarks;
+
+import dev.lost.engine.utils.ReflectionUtils;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectOpenHashMap;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ReflectionUtils} handles against the {@link Field} reads they replaced, on the fields read for every section update
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReflectionAccessBenchmark {
+
+    private Field statesField;
+    private Field sectionPosField;
+    private ClientboundSectionBlocksUpdatePacket packet;
+
+    @Setup
+    public void setup() throws NoSuchFieldException {
+        BenchmarkBootstrap.bootstrap();
+        statesField = ClientboundSectionBlocksUpdatePacket.class.getDeclaredField("states");
+        statesField.setAccessible(true);
+        sectionPosField = ClientboundSectionBlocksUpdatePacket.class.getDeclaredField("sectionPos");
+        sectionPosField.setAccessible(true);
+        Short2ObjectOpenHashMap<BlockState> states = new Short2ObjectOpenHashMap<>();
+        for (short i = 0; i < 16; i++) states.put(i, Blocks.STONE.defaultBlockState());
+        packet = new ClientboundSectionBlocksUpdatePacket(SectionPos.of(0, 4, 0), states);
+    }
+
+    @Benchmark
+    public Object reflectiveField() throws IllegalAccessException {
+        BlockState[] states = (BlockState[]) statesField.get(packet);
+        SectionPos sectionPos = (SectionPos) sectionPosField.get(packet);
+        return states.length == 0 ? sectionPos : states[0];
+    }
+
+    @Benchmark
+    public Object varHandle() {
+        BlockState[] states = ReflectionUtils.getBlockStates(packet);
+        SectionPos sectionPos = ReflectionUtils.getSectionPos(packet);
+        return states.length == 0 ? sectionPos : states[0];
+    }
+}
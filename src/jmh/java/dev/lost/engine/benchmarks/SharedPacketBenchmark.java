@@ -0,0 +1,60 @@
+package dev.lost.engine.benchmarks;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.network.protocol.game.ClientboundSetEntityDataPacket;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An entity data packet written to every viewer, as the same instance (a broadcast, rewritten once and shared) or as a distinct
+ * instance per viewer (never shared, every channel pays the cache lookup and the rewrite)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SharedPacketBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int viewers;
+
+    private EmbeddedChannel[] channels;
+    private ClientboundSetEntityDataPacket[] packets;
+
+    @Setup
+    public void setup() {
+        channels = new EmbeddedChannel[viewers];
+        for (int i = 0; i < viewers; i++) channels[i] = BenchmarkBootstrap.channel();
+        packets = new ClientboundSetEntityDataPacket[viewers];
+    }
+
+    @Setup(Level.Invocation)
+    public void newPackets() {
+        for (int i = 0; i < viewers; i++) packets[i] = EntityDataAndChatBenchmark.entityData();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (EmbeddedChannel channel : channels) channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public Object broadcast() {
+        Object last = null;
+        for (EmbeddedChannel channel : channels) {
+            channel.writeOutbound(packets[0]);
+            last = channel.readOutbound();
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Object distinctPackets() {
+        Object last = null;
+        for (int i = 0; i < viewers; i++) {
+            channels[i].writeOutbound(packets[i]);
+            last = channels[i].readOutbound();
+        }
+        return last;
+    }
+}
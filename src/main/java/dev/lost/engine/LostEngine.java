@@ -3,10 +3,17 @@ package dev.lost.engine;
 import dev.lost.engine.assetsgenerators.LostEngineMappingGenerator;
 import dev.lost.engine.commands.EditorCommand;
 import dev.lost.engine.commands.GiveCommand;
+import dev.lost.engine.commands.LostEngineCommand;
 import dev.lost.engine.commands.ReloadCommand;
 import dev.lost.engine.commands.SetBlockCommand;
+import dev.lost.engine.customblocks.BlockStateRemapper;
 import dev.lost.engine.items.customitems.CustomItem;
+import dev.lost.engine.listeners.BlockUpdateCoalescer;
+import dev.lost.engine.listeners.ChunkPayloadCache;
+import dev.lost.engine.listeners.ClientToolTable;
+import dev.lost.engine.listeners.MiningSpeedTable;
 import dev.lost.engine.listeners.PacketListener;
+import dev.lost.engine.listeners.ServerReloadListener;
 import dev.lost.engine.utils.FloodgateUtils;
 import io.papermc.paper.plugin.lifecycle.event.types.LifecycleEvents;
 import lombok.Getter;
@@ -86,13 +93,19 @@ public final class LostEngine extends JavaPlugin {
         // Commands
         registerCommand("lostenginereload", List.of("lereload","ler") , new ReloadCommand());
         registerCommand("editor", List.of("webeditor"), new EditorCommand());
+        registerCommand("lostengine", List.of("le"), new LostEngineCommand());
         getLifecycleManager().registerEventHandler(LifecycleEvents.COMMANDS, commands -> {
             commands.registrar().register(GiveCommand.getCommand());
             commands.registrar().register(SetBlockCommand.getCommand());
         });
 
         // Listeners
+        configurePacketListener();
+        BlockStateRemapper.rebuild(); // Once every custom block state was registered by the bootstrap
+        ClientToolTable.rebuild();
+        MiningSpeedTable.rebuild();
         PacketListener.inject();
+        getServer().getPluginManager().registerEvents(new ServerReloadListener(), this);
 
         if (getConfig().getBoolean("geyser_compatibility", false)) {
             if (!FloodgateUtils.IS_FLOODGATE_ENABLED) {
@@ -106,6 +119,14 @@ public final class LostEngine extends JavaPlugin {
         WebServer.stop();
     }
 
+    public void configurePacketListener() {
+        ChunkPayloadCache.configure(
+                getConfig().getBoolean("chunk_cache.enabled", true),
+                getConfig().getLong("chunk_cache.max_memory_mb", 64) * 1024 * 1024
+        );
+        BlockUpdateCoalescer.setEnabled(getConfig().getBoolean("coalesce_block_updates", false));
+    }
+
     public static @NotNull Logger logger() {
         return instance.getSLF4JLogger();
     }
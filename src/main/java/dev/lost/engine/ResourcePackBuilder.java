@@ -12,7 +12,9 @@ import dev.lost.furnace.files.unknown.UnknownFile;
 import dev.lost.furnace.resourcepack.BedrockResourcePack;
 import dev.lost.furnace.resourcepack.JavaResourcePack;
 import dev.lost.furnace.resourcepack.ResourcePack;
+import dev.lost.furnace.resourcepackbuilder.ResourcePackBuilder.BuildOptions;
 import dev.lost.furnace.utils.PngOptimizer;
+import dev.lost.furnace.utils.PngOptimizerCache;
 import net.kyori.adventure.key.Key;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.resources.Identifier;
@@ -194,21 +196,37 @@ public class ResourcePackBuilder {
         langFileGenerator.build(resourcePack, bedrockResourcePack);
         blockStateGenerator.build(resourcePack);
 
-        // TODO: Add options to disable oxipng and choose compression level
-        File oxipngFolder = new File(plugin.getDataFolder(), "lostengine_files/oxipng");
-        if (!oxipngFolder.isDirectory()) {
-            oxipngFolder.mkdirs();
-            plugin.getSLF4JLogger().info("Downloading oxipng for resource pack compression... " +
-                    "(this will only happen once, if it fails you can download the file manually and place it in {} " +
-                    "named {})", oxipngFolder.getAbsolutePath(), PngOptimizer.Os.current() == PngOptimizer.Os.WINDOWS ? "oxipng.exe" : "oxipng");
+        // TODO: Add an option to choose the compression level
+        BuildOptions buildOptions = BuildOptions.MAX_COMPRESSION_IN_PROCESS;
+        if (!"java".equalsIgnoreCase(plugin.getConfig().getString("png_optimizer", "oxipng"))) {
+            File oxipngFolder = new File(plugin.getDataFolder(), "lostengine_files/oxipng");
+            if (!oxipngFolder.isDirectory()) {
+                oxipngFolder.mkdirs();
+                plugin.getSLF4JLogger().info("Downloading oxipng for resource pack compression... " +
+                        "(this will only happen once, if it fails you can download the file manually and place it in {} " +
+                        "named {})", oxipngFolder.getAbsolutePath(), PngOptimizer.Os.current() == PngOptimizer.Os.WINDOWS ? "oxipng.exe" : "oxipng");
+            }
+            try {
+                PngOptimizer.downloadOxipng(oxipngFolder.toPath()); // Downloads oxipng if not present
+                buildOptions = BuildOptions.MAX_COMPRESSION;
+            } catch (IOException e) {
+                plugin.getSLF4JLogger().warn("Failed to download oxipng, textures are optimized in process instead", e);
+            }
         }
-        PngOptimizer.downloadOxipng(oxipngFolder.toPath()); // Downloads oxipng if not present
-        resourcePack.build(resourcePackFile, dev.lost.furnace.resourcepackbuilder.ResourcePackBuilder.BuildOptions.MAX_COMPRESSION);
+        int pngThreads = plugin.getConfig().getInt("png_optimization_threads", 0);
+        PngOptimizer.THREADS = pngThreads > 0 ? pngThreads : Runtime.getRuntime().availableProcessors();
+        PngOptimizer.TIMEOUT_SECONDS = plugin.getConfig().getLong("png_optimization_timeout_seconds", 60);
+        PngOptimizer.LOGGER = plugin.getLogger();
+        long pngCacheSize = plugin.getConfig().getLong("png_cache_max_size_mb", 256) * 1024 * 1024;
+        PngOptimizer.CACHE = pngCacheSize > 0
+                ? new PngOptimizerCache(new File(plugin.getDataFolder(), "lostengine_files/png_cache").toPath(), pngCacheSize)
+                : null;
+        resourcePack.build(resourcePackFile, buildOptions);
         if (bedrockResourcePack != null) {
-            bedrockResourcePack.build(
-                    FileUtils.withExtension(resourcePackFile, "mcpack"),
-                    dev.lost.furnace.resourcepackbuilder.ResourcePackBuilder.BuildOptions.MAX_COMPRESSION
-            );
+            bedrockResourcePack.build(FileUtils.withExtension(resourcePackFile, "mcpack"), buildOptions);
+        }
+        if (PngOptimizer.CACHE != null && buildOptions == BuildOptions.MAX_COMPRESSION) {
+            plugin.getSLF4JLogger().info("PNG optimization cache: {} hits, {} misses", PngOptimizer.CACHE.hits(), PngOptimizer.CACHE.misses());
         }
     }
 
@@ -36,6 +36,7 @@ public class DataPackGenerator {
     private final JsonObject incorrectForCopperTools = new JsonObject();
     private final JsonObject incorrectForIronTools = new JsonObject();
     private final JsonObject incorrectForDiamondTools = new JsonObject();
+    private final JsonObject mushroomBlocks = new JsonObject();
     private final Object2ObjectOpenHashMap<String, JsonObject> repairItems = new Object2ObjectOpenHashMap<>();
     private final Object2ObjectOpenHashMap<String, JsonObject> lootTables = new Object2ObjectOpenHashMap<>();
     private static final JsonObject MCMETA;
@@ -74,6 +75,11 @@ public class DataPackGenerator {
         incorrectForCopperTools.add("values", new JsonArray());
         incorrectForIronTools.add("values", new JsonArray());
         incorrectForDiamondTools.add("values", new JsonArray());
+        JsonArray mushroomBlockValues = new JsonArray();
+        mushroomBlockValues.add("minecraft:brown_mushroom_block");
+        mushroomBlockValues.add("minecraft:red_mushroom_block");
+        mushroomBlockValues.add("minecraft:mushroom_stem");
+        mushroomBlocks.add("values", mushroomBlockValues);
     }
 
     public void addSword(String id) {
@@ -128,6 +134,13 @@ public class DataPackGenerator {
         shovelMinable.getAsJsonArray("values").add(id);
     }
 
+    /**
+     * Adds a block to {@code lost_engine:mushroom_blocks}, the blocks the client tools must not be able to mine on their own
+     */
+    public void addMushroomBlock(String id) {
+        mushroomBlocks.getAsJsonArray("values").add(id);
+    }
+
     public void addRepairItems(String materialName, String @NotNull ... itemIds) {
         JsonObject materialTag = new JsonObject();
         JsonArray values = new JsonArray();
@@ -253,6 +266,7 @@ public class DataPackGenerator {
         saveJsonToFile(incorrectForCopperTools,  new File(dataPackFolder + "/data/minecraft/tags/block/incorrect_for_copper_tool.json"));
         saveJsonToFile(incorrectForIronTools,    new File(dataPackFolder + "/data/minecraft/tags/block/incorrect_for_iron_tool.json"));
         saveJsonToFile(incorrectForDiamondTools, new File(dataPackFolder + "/data/minecraft/tags/block/incorrect_for_diamond_tool.json"));
+        saveJsonToFile(mushroomBlocks,           new File(dataPackFolder + "/data/lost_engine/tags/block/mushroom_blocks.json"));
         var it = repairItems.object2ObjectEntrySet().fastIterator();
         while (it.hasNext()) {
             var entry = it.next();
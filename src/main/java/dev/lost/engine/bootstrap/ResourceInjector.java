@@ -370,6 +370,7 @@ public class ResourceInjector {
                     case "tnt" -> BlockInjector.injectTNTBlock(
                             key,
                             BlockStateProvider.getNextBlockState(BlockStateProvider.BlockStateType.REGULAR),
+                            dataPackGenerator,
                             blockSection.getInt("explosion_power", 4)
                     );
                 }
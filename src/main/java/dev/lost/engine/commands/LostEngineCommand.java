@@ -0,0 +1,121 @@
+package dev.lost.engine.commands;
+
+import com.google.common.cache.CacheStats;
+import dev.lost.engine.LostEngine;
+import dev.lost.engine.listeners.ChunkPayloadCache;
+import dev.lost.engine.listeners.ClientItemCache;
+import dev.lost.engine.listeners.PacketProfiler;
+import dev.lost.engine.utils.FileUtils;
+import io.papermc.paper.command.brigadier.BasicCommand;
+import io.papermc.paper.command.brigadier.CommandSourceStack;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+import org.jspecify.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+public class LostEngineCommand implements BasicCommand {
+
+    private static final List<String> SUBCOMMANDS = List.of("stats", "profile");
+    private static final List<String> PROFILE_ACTIONS = List.of("start", "stop", "dump");
+    private static final int PROFILE_TABLE_ROWS = 15;
+    private static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+    @Override
+    public void execute(@NotNull CommandSourceStack commandSourceStack, String @NotNull [] args) {
+        CommandSender sender = commandSourceStack.getSender();
+        if (args.length == 0) {
+            sender.sendPlainMessage("Usage: /lostengine <" + String.join("|", SUBCOMMANDS) + ">");
+            return;
+        }
+        switch (args[0].toLowerCase()) {
+            case "stats" -> sendStats(sender);
+            case "profile" -> profile(sender, args.length > 1 ? args[1].toLowerCase() : "", args.length > 2 ? args[2] : null);
+            default -> sender.sendPlainMessage("Unknown subcommand: " + args[0]);
+        }
+    }
+
+    private static void sendStats(@NotNull CommandSender sender) {
+        long hits = ChunkPayloadCache.getHits();
+        long misses = ChunkPayloadCache.getMisses();
+        sender.sendPlainMessage("Chunk payload cache" + (ChunkPayloadCache.isEnabled() ? "" : " (disabled)") + ":\n" +
+                "  Hits: " + hits + " / Misses: " + misses + " (" + hitRate(hits, misses) + ")\n" +
+                "  Nothing to translate: " + ChunkPayloadCache.getUnchanged() + "\n" +
+                "  Evictions: " + ChunkPayloadCache.getEvictions() + " / Invalidations: " + ChunkPayloadCache.getInvalidations() + "\n" +
+                "  Entries: " + ChunkPayloadCache.getSize() + " / Memory: " + toMegabytes(ChunkPayloadCache.getUsedMemory()) + " of " + toMegabytes(ChunkPayloadCache.getMaxMemory())
+        );
+        CacheStats itemStats = ClientItemCache.getStats();
+        sender.sendPlainMessage("Client item cache:\n" +
+                "  Hits: " + itemStats.hitCount() + " / Misses: " + itemStats.missCount() + " (" + hitRate(itemStats.hitCount(), itemStats.missCount()) + ")\n" +
+                "  Evictions: " + itemStats.evictionCount() + " / Entries: " + ClientItemCache.getSize()
+        );
+    }
+
+    private static void profile(@NotNull CommandSender sender, @NotNull String action, @Nullable String argument) {
+        switch (action) {
+            case "start" -> {
+                int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+                if (argument != null) {
+                    try {
+                        sampleInterval = Integer.parseInt(argument);
+                    } catch (NumberFormatException e) {
+                        sampleInterval = 0;
+                    }
+                    if (sampleInterval < 1) {
+                        sender.sendPlainMessage("The sample interval must be a positive number: " + argument);
+                        return;
+                    }
+                }
+                PacketProfiler.start(sampleInterval);
+                sender.sendPlainMessage("Packet profiler started, recording 1 packet out of " + sampleInterval + ".");
+            }
+            case "stop" -> {
+                PacketProfiler.stop();
+                sender.sendPlainMessage("Packet profiler stopped, use /lostengine profile dump to see the results.");
+            }
+            case "dump" -> {
+                PacketProfiler.table(PROFILE_TABLE_ROWS).forEach(sender::sendPlainMessage);
+                LostEngine plugin = LostEngine.getInstance();
+                File file = new File(plugin.getDataFolder(), "profiler/profile-" + System.currentTimeMillis() + ".json");
+                try {
+                    FileUtils.saveJsonToFile(PacketProfiler.toJson(), file);
+                    sender.sendPlainMessage("Full results saved to " + file.getPath());
+                } catch (IOException e) {
+                    sender.sendPlainMessage("Failed to save the profiler results: " + e.getMessage());
+                    plugin.getSLF4JLogger().error("Failed to save the profiler results", e);
+                }
+            }
+            default -> sender.sendPlainMessage("Usage: /lostengine profile <" + String.join("|", PROFILE_ACTIONS) + "> [sample interval]");
+        }
+    }
+
+    static @NotNull String hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? "n/a" : "%.1f%%".formatted(hits * 100.0 / total);
+    }
+
+    private static @NotNull String toMegabytes(long bytes) {
+        return "%.1f MB".formatted(bytes / (1024.0 * 1024.0));
+    }
+
+    @Override
+    public @NotNull Collection<String> suggest(@NotNull CommandSourceStack commandSourceStack, String @NotNull [] args) {
+        if (args.length <= 1) {
+            String prefix = args.length == 0 ? "" : args[0].toLowerCase();
+            return SUBCOMMANDS.stream().filter(subcommand -> subcommand.startsWith(prefix)).toList();
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("profile")) {
+            String prefix = args[1].toLowerCase();
+            return PROFILE_ACTIONS.stream().filter(action -> action.startsWith(prefix)).toList();
+        }
+        return List.of();
+    }
+
+    @Override
+    public @Nullable String permission() {
+        return "op";
+    }
+}
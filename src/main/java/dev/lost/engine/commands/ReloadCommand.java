@@ -26,6 +26,7 @@ public class ReloadCommand implements BasicCommand {
         LostEngine plugin = LostEngine.getInstance();
         WebServer.stop();
         plugin.reloadConfig();
+        plugin.configurePacketListener();
         if (sender instanceof Player) sender.sendMessage("Reloading LostEngine configuration and resource pack...");
         plugin.getSLF4JLogger().info("Reloading LostEngine configuration and resource pack...");
 
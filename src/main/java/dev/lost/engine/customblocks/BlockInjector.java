@@ -60,6 +60,7 @@ public class BlockInjector {
 
         Item item = ItemInjector.injectBlockItem(id, custom);
 
+        dataPackGenerator.addMushroomBlock(key.identifier().toString());
         switch (minable) {
             case AXE -> dataPackGenerator.addAxeMinable(key.identifier().toString());
             case HOE -> dataPackGenerator.addHoeMinable(key.identifier().toString());
@@ -71,6 +72,7 @@ public class BlockInjector {
     public static void injectTNTBlock(
             String id,
             BlockState clientBlockState,
+            DataPackGenerator dataPackGenerator,
             float explosionPower
     ) throws Exception {
         ResourceKey<Block> key = ResourceKey.create(Registries.BLOCK, Identifier.fromNamespaceAndPath("lost_engine", id));
@@ -93,6 +95,8 @@ public class BlockInjector {
         ReflectionUtils.setBlockMaterial(custom, Material.TNT);
 
         Item item = ItemInjector.injectBlockItem(id, custom);
+
+        dataPackGenerator.addMushroomBlock(key.identifier().toString());
     }
 
     public enum Minable {
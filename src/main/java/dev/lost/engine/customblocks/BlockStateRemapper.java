@@ -0,0 +1,88 @@
+package dev.lost.engine.customblocks;
+
+import dev.lost.engine.customblocks.customblocks.CustomBlock;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Dense table translating server block states into the block states the client knows.
+ * <p>
+ * Both arrays are indexed by {@link Block#BLOCK_STATE_REGISTRY} id, an identity entry means the state is sent unchanged.
+ * It has to be rebuilt once the block states are registered ({@link BlockInjector}), before the first packet is translated.
+ */
+public class BlockStateRemapper {
+
+    private static volatile int[] clientIds = new int[0];
+    private static volatile BlockState[] clientStates = new BlockState[0];
+
+    static {
+        rebuild();
+    }
+
+    public static synchronized void rebuild() {
+        int size = Block.BLOCK_STATE_REGISTRY.size();
+        int[] ids = new int[size];
+        BlockState[] states = new BlockState[size];
+        for (int id = 0; id < size; id++) {
+            BlockState state = Block.BLOCK_STATE_REGISTRY.byId(id);
+            if (state == null) {
+                ids[id] = id;
+                continue;
+            }
+            BlockState clientState = computeClientBlockState(state);
+            ids[id] = clientState == state ? id : Block.getId(clientState);
+            states[id] = clientState;
+        }
+        clientStates = states;
+        clientIds = ids;
+    }
+
+    /**
+     * @return the id the client should receive, {@code id} itself if it is sent unchanged
+     */
+    public static int getClientId(int id) {
+        int[] ids = clientIds;
+        return id >= 0 && id < ids.length ? ids[id] : id;
+    }
+
+    /**
+     * @return the state the client should receive, the same instance if it is sent unchanged
+     */
+    public static @NotNull BlockState getClientBlockState(@NotNull BlockState blockState) {
+        BlockState[] states = clientStates;
+        int id = Block.getId(blockState);
+        if (id >= 0 && id < states.length) {
+            BlockState clientState = states[id];
+            if (clientState != null) return clientState;
+        }
+        // States that are not in the registry (e.g. the unstable TNT state) are resolved the slow way
+        return computeClientBlockState(blockState);
+    }
+
+    public static boolean needsRemap(@NotNull BlockState blockState) {
+        return getClientBlockState(blockState) != blockState;
+    }
+
+    /**
+     * @return the client id of every block state id, the returned array must not be modified
+     */
+    public static int[] getClientIds() {
+        return clientIds;
+    }
+
+    private static @NotNull BlockState computeClientBlockState(@NotNull BlockState blockState) {
+        Block block = blockState.getBlock();
+        if (block instanceof CustomBlock customBlock) {
+            return customBlock.getClientBlockState();
+        } else if (block == Blocks.BROWN_MUSHROOM_BLOCK) {
+            return BlockStateProvider.BROWN_MUSHROOM_BLOCKSTATE;
+        } else if (block == Blocks.RED_MUSHROOM_BLOCK) {
+            return BlockStateProvider.RED_MUSHROOM_BLOCKSTATE;
+        } else if (block == Blocks.MUSHROOM_STEM) {
+            return BlockStateProvider.MUSHROOM_STEM_BLOCKSTATE;
+        }
+        return blockState;
+    }
+}
@@ -0,0 +1,89 @@
+package dev.lost.engine.listeners;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectOpenHashMap;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.game.ClientboundBlockUpdatePacket;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Merges the block updates written to a channel between two flushes into one section update per chunk section.
+ * <p>
+ * The buffered updates are already translated and are written before any other packet, so the order is only changed
+ * between block updates of different sections. One instance per channel, only used from its event loop.
+ */
+public class BlockUpdateCoalescer {
+
+    private static volatile boolean enabled = false;
+
+    private final Long2ObjectLinkedOpenHashMap<PendingSection> sections = new Long2ObjectLinkedOpenHashMap<>();
+
+    public static void setEnabled(boolean enabled) {
+        BlockUpdateCoalescer.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    /**
+     * @param packet a block update already translated for the client
+     */
+    void add(@NotNull ClientboundBlockUpdatePacket packet, @NotNull ChannelPromise promise) {
+        PendingSection section = sections.computeIfAbsent(SectionPos.asLong(packet.getPos()), key -> new PendingSection());
+        // A block updated twice keeps its last state
+        section.states.put(SectionPos.sectionRelativePos(packet.getPos()), packet.getBlockState());
+        section.lastPacket = packet;
+        section.promises.add(promise);
+    }
+
+    /**
+     * Writes the buffered updates to the next handler, without flushing
+     */
+    void writeAll(@NotNull ChannelHandlerContext ctx) {
+        for (Long2ObjectMap.Entry<PendingSection> entry : sections.long2ObjectEntrySet()) {
+            PendingSection section = entry.getValue();
+            Object packet = section.states.size() == 1
+                    ? section.lastPacket
+                    : new ClientboundSectionBlocksUpdatePacket(SectionPos.of(entry.getLongKey()), section.states);
+            ctx.write(packet, section.promise(ctx));
+        }
+        sections.clear();
+    }
+
+    private static class PendingSection {
+        private final Short2ObjectOpenHashMap<BlockState> states = new Short2ObjectOpenHashMap<>();
+        private final List<ChannelPromise> promises = new ObjectArrayList<>(1);
+        private ClientboundBlockUpdatePacket lastPacket;
+
+        /**
+         * @return the promise of the merged write, completing the promises of every update it contains
+         */
+        private @NotNull ChannelPromise promise(@NotNull ChannelHandlerContext ctx) {
+            if (promises.size() == 1) return promises.getFirst();
+            ChannelPromise promise = ctx.newPromise();
+            promise.addListener(future -> {
+                for (ChannelPromise original : promises) {
+                    if (future.isSuccess()) {
+                        original.trySuccess();
+                    } else {
+                        original.tryFailure(future.cause());
+                    }
+                }
+            });
+            return promise;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package dev.lost.engine.listeners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rewritten chunk payloads shared by every player, so the same chunk sent to many players is only translated once.
+ * <p>
+ * An entry keeps the original payload next to the rewritten one and is only used when the payload sent again is identical,
+ * block updates going through {@link PacketListener} invalidate it earlier to free the memory.
+ * Chunks without anything to translate are never stored, walking their palettes is cheaper than comparing them. They are
+ * counted apart from the misses so the hit rate only covers the chunks the cache can serve.
+ */
+public class ChunkPayloadCache {
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder UNCHANGED = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final LongAdder INVALIDATIONS = new LongAdder();
+    private static final LongAdder USED_MEMORY = new LongAdder();
+
+    // Striped by Guava, the chunks sent from every netty thread do not wait on a single lock
+    private static volatile @Nullable Cache<ChunkKey, Entry> entries = null;
+    private static long maxMemory = 0;
+
+    public static synchronized void configure(boolean enabled, long maxMemory) {
+        ChunkPayloadCache.maxMemory = maxMemory;
+        Cache<ChunkKey, Entry> old = entries;
+        entries = enabled ? CacheBuilder.newBuilder()
+                .concurrencyLevel(Math.max(4, Runtime.getRuntime().availableProcessors()))
+                .maximumWeight(maxMemory)
+                .weigher((ChunkKey key, Entry entry) -> (int) Math.min(Integer.MAX_VALUE, entry.size()))
+                .removalListener(ChunkPayloadCache::onRemoval)
+                .build() : null;
+        if (old != null) old.invalidateAll();
+    }
+
+    public static boolean isEnabled() {
+        return entries != null;
+    }
+
+    /**
+     * Counts nothing if it returns {@code null}, the caller then reports the payload with {@link #put} or {@link #unchanged()}
+     *
+     * @return the rewritten payload if {@code payload} was already translated for this chunk, the returned array must not be modified
+     */
+    public static byte @Nullable [] get(@NotNull ResourceKey<Level> level, int x, int z, byte @NotNull [] payload) {
+        Cache<ChunkKey, Entry> cache = entries;
+        if (cache == null) return null;
+        Entry entry = cache.getIfPresent(new ChunkKey(level, ChunkPos.asLong(x, z)));
+        if (entry != null && Arrays.equals(entry.original(), payload)) {
+            HITS.increment();
+            return entry.rewritten();
+        }
+        return null;
+    }
+
+    /**
+     * @param original  the payload as sent by the server, it must not be modified afterwards
+     * @param rewritten the translated payload
+     */
+    public static void put(@NotNull ResourceKey<Level> level, int x, int z, byte @NotNull [] original, byte @NotNull [] rewritten) {
+        Cache<ChunkKey, Entry> cache = entries;
+        if (cache == null) return;
+        MISSES.increment();
+        Entry entry = new Entry(original, rewritten);
+        USED_MEMORY.add(entry.size());
+        cache.put(new ChunkKey(level, ChunkPos.asLong(x, z)), entry);
+    }
+
+    /**
+     * Called instead of {@link #put} for a payload without anything to translate
+     */
+    public static void unchanged() {
+        if (entries != null) UNCHANGED.increment();
+    }
+
+    public static void invalidate(@NotNull ResourceKey<Level> level, long chunkPos) {
+        Cache<ChunkKey, Entry> cache = entries;
+        if (cache == null) return;
+        if (cache.asMap().remove(new ChunkKey(level, chunkPos)) != null) INVALIDATIONS.increment();
+    }
+
+    public static void clear() {
+        Cache<ChunkKey, Entry> cache = entries;
+        if (cache != null) cache.invalidateAll();
+    }
+
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    public static long getUnchanged() {
+        return UNCHANGED.sum();
+    }
+
+    public static long getEvictions() {
+        return EVICTIONS.sum();
+    }
+
+    public static long getInvalidations() {
+        return INVALIDATIONS.sum();
+    }
+
+    public static long getSize() {
+        Cache<ChunkKey, Entry> cache = entries;
+        return cache != null ? cache.size() : 0;
+    }
+
+    public static long getUsedMemory() {
+        return USED_MEMORY.sum();
+    }
+
+    public static long getMaxMemory() {
+        return maxMemory;
+    }
+
+    private static void onRemoval(@NotNull RemovalNotification<ChunkKey, Entry> notification) {
+        Entry entry = notification.getValue();
+        if (entry != null) USED_MEMORY.add(-entry.size());
+        if (notification.getCause() == RemovalCause.SIZE) EVICTIONS.increment();
+    }
+
+    private record ChunkKey(ResourceKey<Level> level, long chunkPos) {
+    }
+
+    private record Entry(byte[] original, byte[] rewritten) {
+        long size() {
+            return (long) original.length + rewritten.length;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package dev.lost.engine.listeners;
+
+import dev.lost.engine.annotations.CanBreakOnUpdates;
+import dev.lost.engine.customblocks.BlockStateRemapper;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Rewrites the block state ids of a serialized chunk payload without decoding the sections.
+ * <p>
+ * Every section is written as the non-empty block count (short) followed by the block states and the biomes paletted containers.
+ * A paletted container is the bits per entry (byte), the palette (a single varint, a varint length followed by varints, or nothing
+ * for the global palette) and the packed data array, its length is computed from the bits per entry.
+ * <p>
+ * A client id needing fewer bytes than the original one is written as a padded varint of the original length (the client
+ * reads overlong varints), only the palettes gaining bytes need a new array.
+ */
+@CanBreakOnUpdates(lastCheckedVersion = "1.21.11") // Make sure the section format did not change
+public class ChunkPayloadRewriter {
+
+    private static final VarHandle LONG_HANDLE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final int BLOCKS_PER_SECTION = 4096;
+    private static final int BIOMES_PER_SECTION = 64;
+    private static final int MAX_INDIRECT_BLOCK_BITS = 8;
+    private static final int MAX_INDIRECT_BIOME_BITS = 3;
+
+    /**
+     * @param inPlace whether {@code payload} may be modified, if not every rewrite goes to a new array
+     * @return {@code payload} if it was rewritten in place, a new array (of the exact size) if a palette entry grew or
+     * {@code inPlace} is false, or {@code null} if nothing had to change
+     */
+    public static byte @Nullable [] rewrite(byte @NotNull [] payload, int sectionCount, boolean inPlace) {
+        int[] clientIds = BlockStateRemapper.getClientIds();
+        IntArrayList palettePatches = null; // (offset, length, client id) triples
+        IntArrayList globalSections = null; // (offset, bits, size delta before it) triples
+        boolean resized = false;
+        int sizeDelta = 0;
+        int index = 0;
+
+        for (int section = 0; section < sectionCount; section++) {
+            index += Short.BYTES; // Non-empty block count
+            int bits = payload[index++] & 0xFF;
+            if (bits <= MAX_INDIRECT_BLOCK_BITS) {
+                int paletteSize = 1; // Single valued container
+                if (bits != 0) {
+                    long varInt = readVarInt(payload, index);
+                    paletteSize = (int) varInt;
+                    index += (int) (varInt >>> 32);
+                }
+                for (int i = 0; i < paletteSize; i++) {
+                    long varInt = readVarInt(payload, index);
+                    int id = (int) varInt;
+                    int length = (int) (varInt >>> 32);
+                    int clientId = remap(clientIds, id);
+                    if (clientId != id) {
+                        if (palettePatches == null) palettePatches = new IntArrayList();
+                        palettePatches.add(index);
+                        palettePatches.add(length);
+                        palettePatches.add(clientId);
+                        int newLength = varIntSize(clientId);
+                        if (newLength > length) {
+                            resized = true;
+                            sizeDelta += newLength - length;
+                        }
+                    }
+                    index += length;
+                }
+            } else if (remapPackedIds(payload, index, bits, clientIds, false)) {
+                if (globalSections == null) globalSections = new IntArrayList();
+                globalSections.add(index);
+                globalSections.add(bits);
+                globalSections.add(sizeDelta);
+            }
+            index += dataLength(bits, BLOCKS_PER_SECTION) * Long.BYTES;
+            index = skipContainer(payload, index, MAX_INDIRECT_BIOME_BITS, BIOMES_PER_SECTION);
+        }
+
+        if (palettePatches == null && globalSections == null) return null;
+
+        byte[] out = payload;
+        if (palettePatches != null) {
+            if (resized || !inPlace) {
+                out = new byte[payload.length + sizeDelta];
+                int read = 0;
+                int write = 0;
+                for (int i = 0; i < palettePatches.size(); i += 3) {
+                    int offset = palettePatches.getInt(i);
+                    System.arraycopy(payload, read, out, write, offset - read);
+                    write += offset - read;
+                    write += writeVarInt(out, write, palettePatches.getInt(i + 2), palettePatches.getInt(i + 1));
+                    read = offset + palettePatches.getInt(i + 1);
+                }
+                System.arraycopy(payload, read, out, write, payload.length - read);
+            } else {
+                for (int i = 0; i < palettePatches.size(); i += 3) {
+                    writeVarInt(out, palettePatches.getInt(i), palettePatches.getInt(i + 2), palettePatches.getInt(i + 1));
+                }
+            }
+        } else if (!inPlace) {
+            out = payload.clone();
+        }
+        if (globalSections != null) {
+            for (int i = 0; i < globalSections.size(); i += 3) {
+                remapPackedIds(out, globalSections.getInt(i) + globalSections.getInt(i + 2), globalSections.getInt(i + 1), clientIds, true);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Remaps the ids of a global palette section, they always keep the same bit width so the longs are patched in place.
+     *
+     * @return whether any id had to change
+     */
+    private static boolean remapPackedIds(byte[] buffer, int offset, int bits, int[] clientIds, boolean write) {
+        int valuesPerLong = 64 / bits;
+        long mask = (1L << bits) - 1;
+        int remaining = BLOCKS_PER_SECTION;
+        boolean changed = false;
+        for (int i = 0, longs = dataLength(bits, BLOCKS_PER_SECTION); i < longs; i++, remaining -= valuesPerLong) {
+            int position = offset + i * Long.BYTES;
+            long value = (long) LONG_HANDLE.get(buffer, position);
+            long newValue = value;
+            for (int j = 0, count = Math.min(valuesPerLong, remaining); j < count; j++) {
+                int shift = j * bits;
+                int id = (int) (value >>> shift & mask);
+                int clientId = remap(clientIds, id);
+                if (clientId != id) {
+                    if (!write) return true;
+                    newValue = newValue & ~(mask << shift) | (long) clientId << shift;
+                }
+            }
+            if (newValue != value) {
+                LONG_HANDLE.set(buffer, position, newValue);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static int skipContainer(byte[] buffer, int index, int maxIndirectBits, int entries) {
+        int bits = buffer[index++] & 0xFF;
+        if (bits <= maxIndirectBits) {
+            int paletteSize = 1;
+            if (bits != 0) {
+                long varInt = readVarInt(buffer, index);
+                paletteSize = (int) varInt;
+                index += (int) (varInt >>> 32);
+            }
+            for (int i = 0; i < paletteSize; i++) {
+                index += (int) (readVarInt(buffer, index) >>> 32);
+            }
+        }
+        return index + dataLength(bits, entries) * Long.BYTES;
+    }
+
+    private static int dataLength(int bits, int entries) {
+        if (bits == 0) return 0;
+        int valuesPerLong = 64 / bits;
+        return (entries + valuesPerLong - 1) / valuesPerLong;
+    }
+
+    private static int remap(int[] clientIds, int id) {
+        return id >= 0 && id < clientIds.length ? clientIds[id] : id;
+    }
+
+    /**
+     * @return the value in the lower 32 bits and the number of bytes read in the upper 32 bits
+     */
+    private static long readVarInt(byte[] buffer, int index) {
+        int value = 0;
+        int length = 0;
+        byte b;
+        do {
+            b = buffer[index + length];
+            value |= (b & 0x7F) << length++ * 7;
+            if (length > 5) throw new IllegalStateException("VarInt too big");
+        } while ((b & 0x80) != 0);
+        return (long) length << 32 | value & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param minLength the minimum number of bytes to write, the varint is padded with empty continuation bytes if it is shorter
+     * @return the number of bytes written
+     */
+    private static int writeVarInt(byte[] buffer, int index, int value, int minLength) {
+        int length = 0;
+        while ((value & ~0x7F) != 0 || length < minLength - 1) {
+            buffer[index + length++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[index + length++] = (byte) value;
+        return length;
+    }
+
+    private static int varIntSize(int value) {
+        for (int i = 1; i < 5; i++) {
+            if ((value & -1 << i * 7) == 0) return i;
+        }
+        return 5;
+    }
+}
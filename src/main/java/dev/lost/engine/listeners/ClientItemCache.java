@@ -0,0 +1,70 @@
+package dev.lost.engine.listeners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Memoizes {@link PacketListener#editItem(ItemStack, boolean)}, most players carry the same few item configurations.
+ * <p>
+ * Entries are keyed by item, component patch and dynamic material flag, the count is not part of the key.
+ * Cached stacks are never sent as is, a hit returns a copy with the requested count.
+ */
+public class ClientItemCache {
+
+    private static final int MAXIMUM_SIZE = 4096;
+
+    private static final Cache<Key, ItemStack> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .recordStats()
+            .build();
+    /**
+     * Incremented on every invalidation, so the translations kept outside of this cache know they are stale
+     */
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    /**
+     * @return a copy of the cached translation with the count of {@code item}, or {@code null} if it is not cached yet
+     */
+    static @Nullable ItemStack get(@NotNull ItemStack item, boolean dynamicMaterial) {
+        ItemStack cached = CACHE.getIfPresent(new Key(item.getItem(), item.getComponentsPatch(), dynamicMaterial));
+        return cached != null ? cached.copyWithCount(item.getCount()) : null;
+    }
+
+    /**
+     * @param translated the translated stack, it must not be modified afterwards
+     */
+    static void put(@NotNull ItemStack item, boolean dynamicMaterial, @NotNull ItemStack translated) {
+        CACHE.put(new Key(item.getItem(), item.getComponentsPatch(), dynamicMaterial), translated);
+    }
+
+    /**
+     * Has to be called when the translation of an item may have changed (e.g. the default components were reloaded)
+     */
+    public static void invalidateAll() {
+        GENERATION.incrementAndGet();
+        CACHE.invalidateAll();
+    }
+
+    static int generation() {
+        return GENERATION.get();
+    }
+
+    public static @NotNull CacheStats getStats() {
+        return CACHE.stats();
+    }
+
+    public static long getSize() {
+        return CACHE.size();
+    }
+
+    private record Key(Item item, DataComponentPatch patch, boolean dynamicMaterial) {
+    }
+}
@@ -0,0 +1,73 @@
+package dev.lost.engine.listeners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import dev.lost.engine.items.customitems.CustomItem;
+import dev.lost.engine.utils.ReflectionUtils;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.core.Holder;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.crafting.RecipePropertySet;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Recipe property sets as sent to the client, without the custom items.
+ * <p>
+ * The server sends the same map of property sets to every player until the recipes are reloaded, it is filtered once
+ * into immutable copies and the server's sets are never modified.
+ */
+public class ClientRecipePropertySets {
+
+    /**
+     * Stored instead of the original map when nothing changed, a value referencing its own key would never be collected
+     */
+    private static final Object UNCHANGED = new Object();
+
+    private static final Cache<Map<ResourceKey<RecipePropertySet>, RecipePropertySet>, Object> CACHE = CacheBuilder.newBuilder()
+            .weakKeys() // Identity keys, replaced by a new map when the recipes are reloaded
+            .maximumSize(4)
+            .build();
+
+    /**
+     * @return the property sets to send to the client, {@code itemSets} itself if no set contains a custom item
+     */
+    @SuppressWarnings("unchecked")
+    public static @NotNull Map<ResourceKey<RecipePropertySet>, RecipePropertySet> getClientItemSets(@NotNull Map<ResourceKey<RecipePropertySet>, RecipePropertySet> itemSets) {
+        try {
+            Object clientItemSets = CACHE.get(itemSets, () -> filter(itemSets));
+            return clientItemSets == UNCHANGED ? itemSets : (Map<ResourceKey<RecipePropertySet>, RecipePropertySet>) clientItemSets;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to filter the recipe property sets", e);
+        }
+    }
+
+    public static void invalidateAll() {
+        CACHE.invalidateAll();
+    }
+
+    private static @NotNull Object filter(@NotNull Map<ResourceKey<RecipePropertySet>, RecipePropertySet> itemSets) {
+        Map<ResourceKey<RecipePropertySet>, RecipePropertySet> clientItemSets = new Object2ObjectOpenHashMap<>(itemSets.size());
+        boolean changed = false;
+        for (Map.Entry<ResourceKey<RecipePropertySet>, RecipePropertySet> entry : itemSets.entrySet()) {
+            Set<Holder<Item>> items = ReflectionUtils.getItems(entry.getValue());
+            List<Holder<Item>> clientItems = new ObjectArrayList<>(items.size());
+            for (Holder<Item> item : items) {
+                if (!(item.value() instanceof CustomItem)) clientItems.add(item);
+            }
+            if (clientItems.size() == items.size()) {
+                clientItemSets.put(entry.getKey(), entry.getValue());
+            } else {
+                clientItemSets.put(entry.getKey(), ReflectionUtils.createRecipePropertySet(Set.copyOf(clientItems)));
+                changed = true;
+            }
+        }
+        return changed ? Map.copyOf(clientItemSets) : UNCHANGED;
+    }
+}
@@ -0,0 +1,124 @@
+package dev.lost.engine.listeners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import dev.lost.engine.customblocks.customblocks.CustomBlock;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.core.Holder;
+import net.minecraft.core.HolderSet;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.Identifier;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.component.Tool;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link Tool} components as sent to the client, a rule making the mushroom blocks almost unbreakable is added
+ * so the server controls the mining speed and the custom blocks are removed from the rules listing blocks directly.
+ * <p>
+ * The default tool of every registered item is translated once by {@link #rebuild()}, tools modified at runtime
+ * (e.g. by another plugin) are translated on first use and kept as long as the original instance is alive.
+ */
+public class ClientToolTable {
+
+    @SuppressWarnings("deprecation")
+    private static final Holder.Reference<Block> MUSHROOM_STEM_HOLDER = Blocks.MUSHROOM_STEM.builtInRegistryHolder();
+    @SuppressWarnings("deprecation")
+    private static final Holder.Reference<Block> BROWN_MUSHROOM_BLOCK_HOLDER = Blocks.BROWN_MUSHROOM_BLOCK.builtInRegistryHolder();
+    @SuppressWarnings("deprecation")
+    private static final Holder.Reference<Block> RED_MUSHROOM_BLOCK_HOLDER = Blocks.RED_MUSHROOM_BLOCK.builtInRegistryHolder();
+
+    /**
+     * Generated by {@link dev.lost.engine.assetsgenerators.DataPackGenerator}, a named set is sent as a single tag id
+     */
+    public static final TagKey<Block> MUSHROOM_BLOCKS_TAG = TagKey.create(Registries.BLOCK, Identifier.fromNamespaceAndPath("lost_engine", "mushroom_blocks"));
+
+    private static final HolderSet.Direct<Block> MUSHROOM_BLOCKS_FALLBACK = HolderSet.direct(List.of(MUSHROOM_STEM_HOLDER, BROWN_MUSHROOM_BLOCK_HOLDER, RED_MUSHROOM_BLOCK_HOLDER));
+
+    private static volatile Tool.Rule mushroomRule = createMushroomRule(MUSHROOM_BLOCKS_FALLBACK);
+
+    /**
+     * The tool sent for items without a tool component
+     */
+    private static volatile Tool defaultTool = new Tool(List.of(mushroomRule), 1.0F, 1, true);
+
+    private static volatile Reference2ObjectOpenHashMap<Tool, Tool> defaultTools = new Reference2ObjectOpenHashMap<>();
+
+    private static final Cache<Tool, Tool> RUNTIME_TOOLS = CacheBuilder.newBuilder()
+            .weakKeys() // Identity keys, tool instances are shared by every copy of a stack
+            .maximumSize(1024)
+            .build();
+
+    /**
+     * Translates the default tool of every registered item, has to be called again when the block tags are reloaded
+     */
+    public static synchronized void rebuild() {
+        mushroomRule = createMushroomRule(BuiltInRegistries.BLOCK.get(MUSHROOM_BLOCKS_TAG)
+                .<HolderSet<Block>>map(named -> named)
+                .orElse(MUSHROOM_BLOCKS_FALLBACK)
+        );
+        defaultTool = new Tool(List.of(mushroomRule), 1.0F, 1, true);
+        Reference2ObjectOpenHashMap<Tool, Tool> tools = new Reference2ObjectOpenHashMap<>();
+        for (Item item : BuiltInRegistries.ITEM) {
+            Tool tool = item.components().get(DataComponents.TOOL);
+            if (tool != null && !tools.containsKey(tool)) {
+                tools.put(tool, translate(tool));
+            }
+        }
+        defaultTools = tools;
+        RUNTIME_TOOLS.invalidateAll();
+    }
+
+    /**
+     * @param tool the tool component of the item, or {@code null} if it has none
+     * @return the tool to send to the client, shared instances that must not be modified
+     */
+    public static @NotNull Tool getClientTool(@Nullable Tool tool) {
+        if (tool == null) return defaultTool;
+        Tool clientTool = defaultTools.get(tool);
+        if (clientTool != null) return clientTool;
+        clientTool = RUNTIME_TOOLS.getIfPresent(tool);
+        if (clientTool == null) {
+            clientTool = translate(tool);
+            RUNTIME_TOOLS.put(tool, clientTool);
+        }
+        return clientTool;
+    }
+
+    /**
+     * The mushroom rule comes first so it wins over any vanilla rule (e.g. {@code minecraft:mineable/axe}), named sets can then
+     * be sent as is: the client does not know the custom blocks they contain. Direct sets still have to be filtered.
+     */
+    private static @NotNull Tool translate(@NotNull Tool tool) {
+        List<Tool.Rule> rules = new ObjectArrayList<>(tool.rules().size() + 1);
+        rules.add(mushroomRule);
+        for (Tool.Rule rule : tool.rules()) {
+            if (rule.blocks() instanceof HolderSet.Named<Block>) {
+                rules.add(rule);
+                continue;
+            }
+            List<Holder<Block>> filtered = new ObjectArrayList<>();
+            for (Holder<Block> holder : rule.blocks()) {
+                if (!(holder.value() instanceof CustomBlock)) {
+                    filtered.add(holder);
+                }
+            }
+            rules.add(filtered.size() == rule.blocks().size() ? rule : new Tool.Rule(HolderSet.direct(filtered), rule.speed(), rule.correctForDrops()));
+        }
+        return new Tool(List.copyOf(rules), tool.defaultMiningSpeed(), tool.damagePerBlock(), tool.canDestroyBlocksInCreative());
+    }
+
+    private static Tool.@NotNull Rule createMushroomRule(@NotNull HolderSet<Block> blocks) {
+        return new Tool.Rule(blocks, Optional.of(0.01F), Optional.empty());
+    }
+}
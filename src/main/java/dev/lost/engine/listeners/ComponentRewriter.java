@@ -0,0 +1,92 @@
+package dev.lost.engine.listeners;
+
+import dev.lost.engine.items.customitems.CustomItem;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.network.chat.*;
+import net.minecraft.network.chat.contents.TranslatableContents;
+import net.minecraft.world.item.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Removes the {@code show_item} hover events of custom items from text components, the client would be kicked
+ * trying to decode an item it does not know.
+ * <p>
+ * Components are walked directly (siblings, translation arguments, {@code show_text} hover events and the names of
+ * {@code show_entity} ones) and only the path leading to a changed node is rebuilt, a component without any custom
+ * item is returned as is without allocating.
+ */
+public class ComponentRewriter {
+
+    /**
+     * @return the component to send to the client, the same instance if nothing had to change
+     */
+    public static @NotNull Component rewrite(@NotNull Component component) {
+        Style style = component.getStyle();
+        Style newStyle = rewriteStyle(style);
+        ComponentContents contents = component.getContents();
+        ComponentContents newContents = contents instanceof TranslatableContents translatableContents ? rewriteTranslatable(translatableContents) : contents;
+        List<Component> siblings = component.getSiblings();
+        List<Component> newSiblings = null;
+        for (int i = 0, size = siblings.size(); i < size; i++) {
+            Component sibling = siblings.get(i);
+            Component newSibling = rewrite(sibling);
+            if (newSibling != sibling) {
+                if (newSiblings == null) newSiblings = new ObjectArrayList<>(siblings);
+                newSiblings.set(i, newSibling);
+            }
+        }
+        if (newStyle == style && newContents == contents && newSiblings == null) return component;
+        MutableComponent newComponent = MutableComponent.create(newContents).setStyle(newStyle);
+        newComponent.getSiblings().addAll(newSiblings != null ? newSiblings : siblings);
+        return newComponent;
+    }
+
+    public static @NotNull Optional<Component> rewrite(@NotNull Optional<Component> component) {
+        if (component.isEmpty()) return component;
+        Component newComponent = rewrite(component.get());
+        return newComponent != component.get() ? Optional.of(newComponent) : component;
+    }
+
+    public static @NotNull ChatType.Bound rewrite(@NotNull ChatType.Bound chatType) {
+        Component name = rewrite(chatType.name());
+        Optional<Component> targetName = rewrite(chatType.targetName());
+        if (name == chatType.name() && targetName == chatType.targetName()) return chatType;
+        return new ChatType.Bound(chatType.chatType(), name, targetName);
+    }
+
+    private static @NotNull Style rewriteStyle(@NotNull Style style) {
+        return switch (style.getHoverEvent()) {
+            // Right now I will remove it because it is a bit useless, and if we don't, it kicks the player, but I may do something else later
+            case HoverEvent.ShowItem(ItemStack item) when item.getItem() instanceof CustomItem -> style.withHoverEvent(null);
+            case HoverEvent.ShowText(Component value) -> {
+                Component newValue = rewrite(value);
+                yield newValue != value ? style.withHoverEvent(new HoverEvent.ShowText(newValue)) : style;
+            }
+            case HoverEvent.ShowEntity(HoverEvent.EntityTooltipInfo entity) -> {
+                Optional<Component> newName = rewrite(entity.name);
+                yield newName != entity.name
+                        ? style.withHoverEvent(new HoverEvent.ShowEntity(new HoverEvent.EntityTooltipInfo(entity.type, entity.uuid, newName)))
+                        : style;
+            }
+            case null, default -> style;
+        };
+    }
+
+    private static @NotNull TranslatableContents rewriteTranslatable(@NotNull TranslatableContents contents) {
+        Object[] args = contents.getArgs();
+        Object[] newArgs = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Component arg) {
+                Component newArg = rewrite(arg);
+                if (newArg != arg) {
+                    if (newArgs == null) newArgs = args.clone();
+                    newArgs[i] = newArg;
+                }
+            }
+        }
+        return newArgs != null ? new TranslatableContents(contents.getKey(), contents.getFallback(), newArgs) : contents;
+    }
+}
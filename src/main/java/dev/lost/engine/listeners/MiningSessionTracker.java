@@ -0,0 +1,104 @@
+package dev.lost.engine.listeners;
+
+import it.unimi.dsi.fastutil.objects.Reference2FloatLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2FloatMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.protocol.game.ClientboundLevelEventPacket;
+import net.minecraft.network.protocol.game.ClientboundUpdateAttributesPacket;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.ai.attributes.AttributeInstance;
+import net.minecraft.world.entity.ai.attributes.Attributes;
+import net.minecraft.world.level.GameType;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mining speed compensation, the netty threads only queue the blocks players start or stop to mine and everything reading
+ * the world or the player runs on the main thread.
+ * <p>
+ * The queue is drained by a task submitted to the server before the packet itself is, so the block is still there when an
+ * instant break is checked. Every event queued until then is handled at once and each player gets at most one attribute update.
+ * <p>
+ * The compensation is removed once the player stops mining, so the next block does not start at the speed of the previous one.
+ */
+public class MiningSessionTracker {
+
+    private static final Queue<Event> EVENTS = new ConcurrentLinkedQueue<>();
+    private static final AtomicBoolean DRAIN_SCHEDULED = new AtomicBoolean(false);
+
+    /**
+     * @param pos the block started, {@code null} when the player stopped or aborted mining
+     */
+    private record Event(@NotNull ServerPlayer player, @NotNull PacketListener.ChannelDupeHandler handler, @Nullable BlockPos pos) {
+    }
+
+    /**
+     * Called from the netty thread of the player, before the packet is passed to the server
+     */
+    static void startDestroyBlock(@NotNull ServerPlayer player, @NotNull PacketListener.ChannelDupeHandler handler, @NotNull BlockPos pos) {
+        queue(new Event(player, handler, pos));
+    }
+
+    /**
+     * Called from the netty thread of the player, before the packet is passed to the server
+     */
+    static void stopDestroyBlock(@NotNull ServerPlayer player, @NotNull PacketListener.ChannelDupeHandler handler) {
+        queue(new Event(player, handler, null));
+    }
+
+    private static void queue(@NotNull Event event) {
+        ServerPlayer player = event.player();
+        EVENTS.add(event);
+        if (DRAIN_SCHEDULED.compareAndSet(false, true)) {
+            //noinspection resource -- false positive for ServerPlayer#level()
+            player.level().getServer().execute(MiningSessionTracker::drain);
+        }
+    }
+
+    private static void drain() {
+        // Cleared first, an event queued while draining is either drained now or schedules another drain
+        DRAIN_SCHEDULED.set(false);
+        Reference2FloatLinkedOpenHashMap<PacketListener.ChannelDupeHandler> ratios = new Reference2FloatLinkedOpenHashMap<>();
+        Reference2ObjectOpenHashMap<PacketListener.ChannelDupeHandler, ServerPlayer> players = new Reference2ObjectOpenHashMap<>();
+        Event event;
+        while ((event = EVENTS.poll()) != null) {
+            ServerPlayer player = event.player();
+            if (player.isRemoved()) continue;
+            float ratio = 1.0F; // Also the reset after an abort, a stop or an instant break
+            BlockPos pos = event.pos();
+            if (pos != null && player.gameMode.getGameModeForPlayer() == GameType.SURVIVAL) {
+                //noinspection resource -- false positive for ServerPlayer#level()
+                BlockState blockState = player.level().getBlockState(pos);
+                if (MiningSpeedTable.isCompensated(blockState)) {
+                    if (blockState.getDestroyProgress(player, player.level(), pos) >= 1.0F) {
+                        player.connection.send(new ClientboundLevelEventPacket(2001, pos, Block.getId(blockState), false));
+                    } else {
+                        ratio = MiningSpeedTable.getRatio(blockState, player.getInventory().getSelectedItem());
+                    }
+                }
+            }
+            // Only the last event matters
+            ratios.put(event.handler(), ratio);
+            players.put(event.handler(), player);
+        }
+        for (Reference2FloatMap.Entry<PacketListener.ChannelDupeHandler> entry : ratios.reference2FloatEntrySet()) {
+            PacketListener.ChannelDupeHandler handler = entry.getKey();
+            float ratio = entry.getFloatValue();
+            // Only sent when the ratio changes, a reset is only sent if a compensation was applied
+            if (ratio == handler.miningRatio) continue;
+            handler.miningRatio = ratio;
+            ServerPlayer player = players.get(handler);
+            AttributeInstance playerAttribute = player.getAttribute(Attributes.BLOCK_BREAK_SPEED);
+            // The ratio is applied when the packet is written, like for the updates sent by the server
+            if (playerAttribute != null) player.connection.send(new ClientboundUpdateAttributesPacket(player.getId(), List.of(playerAttribute)));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package dev.lost.engine.listeners;
+
+import dev.lost.engine.customblocks.customblocks.CustomBlock;
+import it.unimi.dsi.fastutil.objects.Reference2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.component.Tool;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Ratios between the mining speed the server uses and the one the client computes from what it knows (client block state
+ * and {@link ClientToolTable client tool}), the block break speed attribute sent to the client is multiplied by it.
+ * <p>
+ * The ratio only depends on the block state and the tool component of the held item, {@link #rebuild()} computes it for
+ * every custom and mushroom block state and every default tool. Tools modified at runtime are computed on each use.
+ */
+public class MiningSpeedTable {
+
+    private static volatile Reference2ObjectOpenHashMap<Tool, Reference2FloatOpenHashMap<BlockState>> ratios = new Reference2ObjectOpenHashMap<>();
+
+    /**
+     * An empty hand is not translated, unlike the items without a tool component
+     */
+    private static volatile Reference2FloatOpenHashMap<BlockState> emptyHandRatios = new Reference2FloatOpenHashMap<>();
+
+    /**
+     * Has to be called after {@link ClientToolTable#rebuild()}
+     */
+    public static synchronized void rebuild() {
+        List<BlockState> states = BuiltInRegistries.BLOCK.stream()
+                .filter(block -> isCompensated(block.defaultBlockState()))
+                .flatMap(block -> block.getStateDefinition().getPossibleStates().stream())
+                .toList();
+        Reference2ObjectOpenHashMap<Tool, Reference2FloatOpenHashMap<BlockState>> newRatios = new Reference2ObjectOpenHashMap<>();
+        newRatios.put(null, computeRatios(states, null, ClientToolTable.getClientTool(null)));
+        for (Item item : BuiltInRegistries.ITEM) {
+            Tool tool = item.components().get(DataComponents.TOOL);
+            if (tool != null && !newRatios.containsKey(tool)) {
+                newRatios.put(tool, computeRatios(states, tool, ClientToolTable.getClientTool(tool)));
+            }
+        }
+        ratios = newRatios;
+        emptyHandRatios = computeRatios(states, null, null);
+    }
+
+    /**
+     * @return whether the client mines this block at a different speed than the server
+     */
+    public static boolean isCompensated(@NotNull BlockState state) {
+        Block block = state.getBlock();
+        return block instanceof CustomBlock || block == Blocks.BROWN_MUSHROOM_BLOCK || block == Blocks.RED_MUSHROOM_BLOCK || block == Blocks.MUSHROOM_STEM;
+    }
+
+    /**
+     * @param item the item held by the player
+     * @return the factor to apply to the block break speed sent to the client, {@code 1} if no compensation is needed or possible
+     */
+    public static float getRatio(@NotNull BlockState state, @NotNull ItemStack item) {
+        if (!isCompensated(state)) return 1.0F;
+        Tool tool = item.get(DataComponents.TOOL);
+        Reference2FloatOpenHashMap<BlockState> toolRatios = item.isEmpty() ? emptyHandRatios : ratios.get(tool);
+        if (toolRatios != null) {
+            float ratio = toolRatios.getFloat(state);
+            if (!Float.isNaN(ratio)) return ratio;
+        }
+        return computeRatio(state, tool, item.isEmpty() ? null : ClientToolTable.getClientTool(tool));
+    }
+
+    private static @NotNull Reference2FloatOpenHashMap<BlockState> computeRatios(@NotNull List<BlockState> states, @Nullable Tool tool, @Nullable Tool clientTool) {
+        Reference2FloatOpenHashMap<BlockState> toolRatios = new Reference2FloatOpenHashMap<>(states.size());
+        toolRatios.defaultReturnValue(Float.NaN);
+        for (BlockState state : states) {
+            toolRatios.put(state, computeRatio(state, tool, clientTool));
+        }
+        return toolRatios;
+    }
+
+    private static float computeRatio(@NotNull BlockState state, @Nullable Tool tool, @Nullable Tool clientTool) {
+        BlockState clientState = state.getBlock() instanceof CustomBlock customBlock ? customBlock.getClientBlockState() : state;
+        float clientDestroySpeed = getDestroySpeed(clientState, clientTool);
+        if (clientDestroySpeed == 0) return 1.0F;
+        return getDestroySpeed(state, tool) / clientDestroySpeed;
+    }
+
+    /**
+     * This is a simplified version of {@link BlockState#getDestroyProgress}
+     */
+    public static float getDestroySpeed(@NotNull BlockState state, @Nullable Tool tool) {
+        //noinspection DataFlowIssue -- This is just a simple getter lol it doesn't use the parameters
+        float destroySpeed = state.getDestroySpeed(null, null);
+        if (destroySpeed == -1.0F) {
+            return 0.0F;
+        } else {
+            int i = !state.requiresCorrectToolForDrops() || (tool != null && tool.isCorrectForDrops(state)) ? 30 : 100;
+            return (tool != null ? tool.getMiningSpeed(state) : 1.0F) / destroySpeed / i;
+        }
+    }
+}
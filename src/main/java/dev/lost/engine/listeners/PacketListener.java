@@ -1,34 +1,30 @@
 package dev.lost.engine.listeners;
 
-import com.google.gson.*;
 import com.mojang.datafixers.util.Pair;
-import com.mojang.serialization.JsonOps;
 import dev.lost.engine.LostEngine;
-import dev.lost.engine.customblocks.BlockStateProvider;
+import dev.lost.engine.customblocks.BlockStateRemapper;
 import dev.lost.engine.customblocks.customblocks.CustomBlock;
 import dev.lost.engine.items.customitems.CustomItem;
 import dev.lost.engine.utils.FloodgateUtils;
 import dev.lost.engine.utils.ItemUtils;
 import dev.lost.engine.utils.ReflectionUtils;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.papermc.paper.network.ChannelInitializeListenerHolder;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectOpenHashMap;
 import net.kyori.adventure.key.Key;
-import net.minecraft.core.Holder;
-import net.minecraft.core.HolderSet;
+import net.minecraft.core.SectionPos;
 import net.minecraft.core.component.DataComponents;
 import net.minecraft.core.particles.BlockParticleOption;
 import net.minecraft.core.particles.ItemParticleOption;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.network.Connection;
-import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.ChatType;
 import net.minecraft.network.chat.Component;
-import net.minecraft.network.chat.ComponentSerialization;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.network.protocol.common.ClientboundResourcePackPushPacket;
 import net.minecraft.network.protocol.common.ServerboundResourcePackPacket;
@@ -38,41 +34,30 @@ import net.minecraft.network.syncher.EntityDataSerializers;
 import net.minecraft.network.syncher.SynchedEntityData;
 import net.minecraft.resources.Identifier;
 import net.minecraft.resources.ResourceKey;
-import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.server.network.ServerGamePacketListenerImpl;
 import net.minecraft.world.entity.EquipmentSlot;
 import net.minecraft.world.entity.ai.attributes.AttributeInstance;
 import net.minecraft.world.entity.ai.attributes.Attributes;
-import net.minecraft.world.item.Item;
+import net.minecraft.world.entity.player.Inventory;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
 import net.minecraft.world.item.component.BlockItemStateProperties;
 import net.minecraft.world.item.component.Tool;
 import net.minecraft.world.item.crafting.RecipePropertySet;
-import net.minecraft.world.level.GameType;
-import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.chunk.LevelChunkSection;
-import net.minecraft.world.level.chunk.Palette;
-import net.minecraft.world.level.chunk.PalettedContainer;
-import net.minecraft.world.level.chunk.PalettedContainerFactory;
+import org.bukkit.Bukkit;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class PacketListener {
 
 
-    @SuppressWarnings("deprecation")
-    private static final Holder.Reference<Block> MUSHROOM_STEM_HOLDER = Blocks.MUSHROOM_STEM.builtInRegistryHolder();
-    @SuppressWarnings("deprecation")
-    private static final Holder.Reference<Block> BROWN_MUSHROOM_BLOCK_HOLDER = Blocks.BROWN_MUSHROOM_BLOCK.builtInRegistryHolder();
-    @SuppressWarnings("deprecation")
-    private static final Holder.Reference<Block> RED_MUSHROOM_BLOCK_HOLDER = Blocks.RED_MUSHROOM_BLOCK.builtInRegistryHolder();
-
     private static final BlockItemStateProperties MUSHROOM_BLOCK_ITEM_STATE_PROPERTIES = new BlockItemStateProperties(Map.of(
             "down", "true",
             "east", "true",
@@ -83,17 +68,91 @@ public class PacketListener {
     ));
 
     public static void inject() {
+        registerRewriters();
         ChannelInitializeListenerHolder.addListener(
                 Key.key("lost_engine", "packet_listener"),
                 channel -> channel.pipeline().addBefore("packet_handler", "lost_engine_packet_listener", new ChannelDupeHandler())
         );
     }
 
-    private static class ChannelDupeHandler extends ChannelDuplexHandler {
+    /**
+     * Registers the built-in rewriters, {@link #inject()} already does it
+     */
+    public static void registerRewriters() {
+        for (Class<?> packetClass : List.of(
+                ServerboundSetCreativeModeSlotPacket.class,
+                ServerboundContainerClickPacket.class,
+                ServerboundPlayerActionPacket.class,
+                ServerboundResourcePackPacket.class,
+                ServerboundSetCarriedItemPacket.class
+        )) {
+            PacketRewriterRegistry.registerServerbound(packetClass, PacketListener::serverbound);
+        }
+        // Broadcast to every viewer and costly to rewrite (copies, item translations), their rewrite does not depend on the
+        // receiving player so it is shared. Single block updates and level events are a lookup, cheaper than the cache.
+        for (Class<?> packetClass : List.of(
+                ClientboundSectionBlocksUpdatePacket.class,
+                ClientboundSetEquipmentPacket.class,
+                ClientboundSetEntityDataPacket.class,
+                ClientboundLevelParticlesPacket.class
+        )) {
+            PacketRewriterRegistry.registerClientbound(packetClass, SharedPacketCache.shared(PacketListener::clientbound));
+        }
+        for (Class<?> packetClass : List.of(
+                ClientboundBlockUpdatePacket.class,
+                ClientboundLevelEventPacket.class,
+                ClientboundSetPlayerInventoryPacket.class,
+                ClientboundLevelChunkWithLightPacket.class,
+                ClientboundContainerSetContentPacket.class,
+                ClientboundContainerSetSlotPacket.class,
+                ClientboundSetCursorItemPacket.class,
+                ClientboundSystemChatPacket.class,
+                ClientboundPlayerChatPacket.class,
+                ClientboundDisguisedChatPacket.class,
+                ClientboundSetTitleTextPacket.class,
+                ClientboundSetSubtitleTextPacket.class,
+                ClientboundSetActionBarTextPacket.class,
+                ClientboundBundlePacket.class,
+                ClientboundFinishConfigurationPacket.class,
+                ClientboundSetHeldSlotPacket.class,
+                ClientboundUpdateRecipesPacket.class,
+                ClientboundUpdateAttributesPacket.class
+        )) {
+            PacketRewriterRegistry.registerClientbound(packetClass, PacketListener::clientbound);
+        }
+    }
+
+    public static class ChannelDupeHandler extends ChannelDuplexHandler {
         private ServerPlayer player;
         private boolean isWaitingForResourcePack = false;
         private Boolean isBedrockClient = null;
+        /**
+         * The slot selected by the client
+         */
         volatile byte slot = 0;
+        /**
+         * The slot last sent with its dynamic material, lags behind {@link #slot} until the next tick
+         */
+        volatile byte dynamicSlot = 0;
+        final AtomicBoolean slotUpdateScheduled = new AtomicBoolean(false);
+        private final BlockUpdateCoalescer blockUpdates = new BlockUpdateCoalescer();
+        /**
+         * Client stacks of the hotbar slots (default and dynamic material), reused until the slot contents change
+         */
+        private final ItemStack[] hotbarItems = new ItemStack[Inventory.getSelectionSize()];
+        private final ItemStack[][] hotbarClientItems = new ItemStack[Inventory.getSelectionSize()][2];
+        /**
+         * The {@link ClientItemCache#generation()} the hotbar client stacks were translated in
+         */
+        private int hotbarGeneration = ClientItemCache.generation();
+        /**
+         * The ratio applied to the block break speed attribute last sent to the client
+         */
+        volatile float miningRatio = 1.0F;
+        /**
+         * Whether the packet being rewritten was picked by the {@link PacketProfiler}, only used from the channel's event loop
+         */
+        private boolean sampled = false;
 
         private boolean isBedrockClient(ChannelHandlerContext ctx) {
             if (isBedrockClient != null) return isBedrockClient;
@@ -102,13 +161,41 @@ public class PacketListener {
                 isBedrockClient = FloodgateUtils.isBedrockPlayer(player.getUUID());
                 if (isBedrockClient) {
                     LostEngine.logger().info("Bedrock client detected: {}", player.getName().getString());
+                    // Geyser translates everything itself, nothing has to go through this handler anymore
+                    ctx.pipeline().remove(this);
                 }
                 return isBedrockClient;
             }
             return false;
         }
 
-        private @Nullable ServerPlayer getPlayer(ChannelHandlerContext ctx) {
+        /**
+         * Only called from the channel's event loop
+         *
+         * @return a copy of the client stack, free to modify like the ones from {@link #editItem(ItemStack, boolean)}
+         */
+        private Optional<ItemStack> editHotbarItem(int slot, @NotNull ItemStack item, boolean dynamicMaterial) {
+            int generation = ClientItemCache.generation();
+            if (hotbarGeneration != generation) { // The translations were reloaded
+                hotbarGeneration = generation;
+                Arrays.fill(hotbarItems, null);
+                for (ItemStack[] clientItems : hotbarClientItems) Arrays.fill(clientItems, null);
+            }
+            if (hotbarItems[slot] == null || !ItemStack.matches(hotbarItems[slot], item)) {
+                hotbarItems[slot] = item.copy();
+                hotbarClientItems[slot][0] = null;
+                hotbarClientItems[slot][1] = null;
+            }
+            int index = dynamicMaterial ? 1 : 0;
+            ItemStack clientItem = hotbarClientItems[slot][index];
+            if (clientItem == null) {
+                clientItem = editItem(item, dynamicMaterial).orElse(ItemStack.EMPTY);
+                hotbarClientItems[slot][index] = clientItem;
+            }
+            return clientItem.isEmpty() ? Optional.empty() : Optional.of(clientItem.copy());
+        }
+
+        public @Nullable ServerPlayer getPlayer(ChannelHandlerContext ctx) {
             if (player != null) return player;
             Channel channel = ctx.channel();
             Connection connection = (Connection) channel.pipeline().get("packet_handler");
@@ -119,13 +206,56 @@ public class PacketListener {
         }
 
         @Override
-        public void channelRead(@NotNull ChannelHandlerContext ctx, Object msg) throws Exception {
-            super.channelRead(ctx, isBedrockClient(ctx) ? msg : serverbound(msg, ctx, this));
+        public void channelRead(@NotNull ChannelHandlerContext ctx, @NotNull Object msg) throws Exception {
+            PacketRewriter<Object> rewriter = PacketRewriterRegistry.serverbound(msg.getClass());
+            if (rewriter == PacketRewriterRegistry.PASS_THROUGH || isBedrockClient(ctx)) {
+                if (PacketProfiler.isEnabled() && PacketProfiler.sample()) PacketProfiler.recordSeen(msg.getClass(), getPlayer(ctx));
+                super.channelRead(ctx, msg);
+                return;
+            }
+            super.channelRead(ctx, PacketProfiler.isEnabled() && PacketProfiler.sample() ? profile(rewriter, msg, ctx) : rewriter.rewrite(msg, ctx, this));
         }
 
         @Override
-        public void write(@NotNull ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-            super.write(ctx, isBedrockClient(ctx) ? msg : clientbound(msg, ctx, this), promise);
+        public void write(@NotNull ChannelHandlerContext ctx, @NotNull Object msg, ChannelPromise promise) throws Exception {
+            // Nothing is written before the block updates buffered earlier
+            if (!(msg instanceof ClientboundBlockUpdatePacket) && !blockUpdates.isEmpty()) blockUpdates.writeAll(ctx);
+            PacketRewriter<Object> rewriter = PacketRewriterRegistry.clientbound(msg.getClass());
+            if (rewriter == PacketRewriterRegistry.PASS_THROUGH || isBedrockClient(ctx)) {
+                if (PacketProfiler.isEnabled() && PacketProfiler.sample()) PacketProfiler.recordSeen(msg.getClass(), getPlayer(ctx));
+                super.write(ctx, msg, promise);
+                return;
+            }
+            Object result = PacketProfiler.isEnabled() && PacketProfiler.sample() ? profile(rewriter, msg, ctx) : rewriter.rewrite(msg, ctx, this);
+            if (result instanceof ClientboundBlockUpdatePacket blockUpdate && BlockUpdateCoalescer.isEnabled()) {
+                blockUpdates.add(blockUpdate, promise);
+                return;
+            }
+            super.write(ctx, result, promise);
+        }
+
+        @Override
+        public void flush(@NotNull ChannelHandlerContext ctx) throws Exception {
+            if (!blockUpdates.isEmpty()) blockUpdates.writeAll(ctx);
+            super.flush(ctx);
+        }
+
+        @Override
+        public void handlerRemoved(@NotNull ChannelHandlerContext ctx) throws Exception {
+            if (!blockUpdates.isEmpty()) blockUpdates.writeAll(ctx);
+            super.handlerRemoved(ctx);
+        }
+
+        private @NotNull Object profile(@NotNull PacketRewriter<Object> rewriter, @NotNull Object msg, @NotNull ChannelHandlerContext ctx) throws Exception {
+            sampled = true;
+            try {
+                long start = System.nanoTime();
+                Object result = rewriter.rewrite(msg, ctx, this);
+                PacketProfiler.recordRewrite(msg.getClass(), getPlayer(ctx), System.nanoTime() - start, result != msg);
+                return result;
+            } finally {
+                sampled = false;
+            }
         }
     }
 
@@ -150,44 +280,15 @@ public class PacketListener {
                 );
             }
             case ServerboundPlayerActionPacket packet -> {
-                ServerPlayer player = handler.getPlayer(ctx);
-                if (player == null) break;
-                if (player.gameMode.getGameModeForPlayer() != GameType.SURVIVAL) break;
-                if (packet.getAction() == ServerboundPlayerActionPacket.Action.START_DESTROY_BLOCK) {
-                    //noinspection resource -- false positive for ServerPlayer#level()
-                    BlockState blockState = player.level().getBlockState(packet.getPos());
-                    if (blockState.getBlock() instanceof CustomBlock || blockState.getBlock() == Blocks.BROWN_MUSHROOM_BLOCK || blockState.getBlock() == Blocks.RED_MUSHROOM_BLOCK || blockState.getBlock() == Blocks.MUSHROOM_STEM) {
-                        if (blockState.getDestroyProgress(player, player.level(), packet.getPos()) >= 1.0F) {
-                            player.connection.send(new ClientboundLevelEventPacket(2001, packet.getPos(), Block.getId(blockState), false));
-                            break;
-                        }
-                        float clientBlockDestroySpeed = getDestroySpeed(blockState.getBlock() instanceof CustomBlock customBlock ? customBlock.getClientBlockState() : blockState, editItem(player.getInventory().getSelectedItem(), false).orElse(player.getInventory().getSelectedItem()));
-                        if (clientBlockDestroySpeed == 0) break;
-                        float blockDestroySpeed = getDestroySpeed(blockState, player.getInventory().getSelectedItem());
-                        if (blockDestroySpeed != clientBlockDestroySpeed) {
-                            AttributeInstance blockBreakSpeed = new AttributeInstance(Attributes.BLOCK_BREAK_SPEED, attributeInstance -> {
-                            });
-                            AttributeInstance playerAttribute = player.getAttribute(Attributes.BLOCK_BREAK_SPEED);
-                            if (playerAttribute != null) blockBreakSpeed.apply(playerAttribute.pack());
-                            // The ratio is between what the client actually knows and what the server thinks
-                            float ratio = blockDestroySpeed / clientBlockDestroySpeed;
-                            blockBreakSpeed.setBaseValue(ratio * blockBreakSpeed.getBaseValue());
-                            player.connection.send(new ClientboundUpdateAttributesPacket(player.getId(), List.of(blockBreakSpeed)));
-                        }
-                    }
-                } else if (packet.getAction() == ServerboundPlayerActionPacket.Action.ABORT_DESTROY_BLOCK ||
-                        packet.getAction() == ServerboundPlayerActionPacket.Action.STOP_DESTROY_BLOCK) {
-                    //noinspection resource -- false positive for ServerPlayer#level()
-                    BlockState blockState = player.level().getBlockState(packet.getPos());
-                    if (blockState.getBlock() instanceof CustomBlock || blockState.getBlock() == Blocks.BROWN_MUSHROOM_BLOCK || blockState.getBlock() == Blocks.RED_MUSHROOM_BLOCK || blockState.getBlock() == Blocks.MUSHROOM_STEM) {
-                        AttributeInstance blockBreakSpeed = new AttributeInstance(Attributes.BLOCK_BREAK_SPEED, attributeInstance -> {
-                        });
-                        AttributeInstance playerAttribute = player.getAttribute(Attributes.BLOCK_BREAK_SPEED);
-                        if (playerAttribute != null) {
-                            blockBreakSpeed.apply(playerAttribute.pack());
-                        }
-                        player.connection.send(new ClientboundUpdateAttributesPacket(player.getId(), List.of(blockBreakSpeed)));
-                    }
+                ServerboundPlayerActionPacket.Action action = packet.getAction();
+                if (action == ServerboundPlayerActionPacket.Action.START_DESTROY_BLOCK) {
+                    ServerPlayer player = handler.getPlayer(ctx);
+                    if (player != null) MiningSessionTracker.startDestroyBlock(player, handler, packet.getPos());
+                } else if (action == ServerboundPlayerActionPacket.Action.ABORT_DESTROY_BLOCK
+                        || action == ServerboundPlayerActionPacket.Action.STOP_DESTROY_BLOCK) {
+                    ServerPlayer player = handler.getPlayer(ctx);
+                    // Queued even if no compensation was sent yet, a block started just before may still be waiting for the drain
+                    if (player != null) MiningSessionTracker.stopDestroyBlock(player, handler);
                 }
             }
             case ServerboundResourcePackPacket(UUID ignored, ServerboundResourcePackPacket.Action action) -> {
@@ -196,13 +297,12 @@ public class PacketListener {
                 }
             }
             case ServerboundSetCarriedItemPacket packet -> {
-                if (handler.isBedrockClient) break;
+                if (Boolean.TRUE.equals(handler.isBedrockClient)) break;
                 ServerPlayer player = handler.getPlayer(ctx);
                 if (player == null || player.isImmobile()) break;
                 byte slot = (byte) packet.getSlot();
                 if (slot < 0 || slot >= player.getInventory().getContainerSize()) break;
-                processNewSlot(handler.slot, slot, player);
-                handler.slot = slot;
+                processNewSlot(handler, slot, player);
             }
             default -> {
             }
@@ -213,30 +313,43 @@ public class PacketListener {
     private static Object clientbound(@NotNull Object msg, ChannelHandlerContext ctx, ChannelDupeHandler handler) throws Exception {
         switch (msg) {
             case ClientboundSetPlayerInventoryPacket(int slot, ItemStack contents) -> {
-                ServerPlayer player = handler.getPlayer(ctx);
-                Optional<ItemStack> newItem = editItem(contents, player != null && slot == player.getInventory().getSelectedSlot());
+                Optional<ItemStack> newItem = Inventory.isHotbarSlot(slot)
+                        ? handler.editHotbarItem(slot, contents, slot == handler.dynamicSlot)
+                        : editItem(contents, false);
                 if (newItem.isPresent()) {
                     return new ClientboundSetPlayerInventoryPacket(slot, newItem.get());
                 }
             }
             case ClientboundBlockUpdatePacket packet -> {
-                Optional<BlockState> newBlockState = getClientBlockState(packet.blockState);
-                if (newBlockState.isPresent()) {
-                    return new ClientboundBlockUpdatePacket(packet.getPos(), newBlockState.get());
+                ServerPlayer player = handler.getPlayer(ctx);
+                if (player != null) {
+                    // noinspection resource -- false positive for ServerPlayer#level()
+                    ChunkPayloadCache.invalidate(player.level().dimension(), ChunkPos.asLong(packet.getPos()));
+                }
+                BlockState newBlockState = BlockStateRemapper.getClientBlockState(packet.blockState);
+                if (newBlockState != packet.blockState) {
+                    return new ClientboundBlockUpdatePacket(packet.getPos(), newBlockState);
                 }
             }
             case ClientboundSectionBlocksUpdatePacket packet -> {
-                try {
-                    BlockState[] blockStates = ReflectionUtils.getBlockStates(packet);
-                    for (int i = 0; i < blockStates.length; i++) {
-                        Optional<BlockState> newBlockState = getClientBlockState(blockStates[i]);
-                        if (newBlockState.isPresent()) {
-                            blockStates[i] = newBlockState.get();
-                        }
+                ServerPlayer player = handler.getPlayer(ctx);
+                if (player != null) {
+                    // noinspection resource -- false positive for ServerPlayer#level()
+                    ChunkPayloadCache.invalidate(player.level().dimension(), ReflectionUtils.getSectionPos(packet).chunk().toLong());
+                }
+                boolean requiresEdit = false;
+                for (BlockState blockState : ReflectionUtils.getBlockStates(packet)) {
+                    if (BlockStateRemapper.needsRemap(blockState)) {
+                        requiresEdit = true;
+                        break;
                     }
-                    ReflectionUtils.setBlockStates(packet, blockStates);
-                } catch (Exception e) {
-                    throw new RuntimeException("Failed to update block states via reflection in ClientboundSectionBlocksUpdatePacket", e);
+                }
+                if (requiresEdit) {
+                    SectionPos sectionPos = ReflectionUtils.getSectionPos(packet);
+                    // The packet may be shared with other channels, a new one is sent instead of editing it
+                    Short2ObjectMap<BlockState> blockStates = new Short2ObjectOpenHashMap<>();
+                    packet.runUpdates((pos, blockState) -> blockStates.put(SectionPos.sectionRelativePos(pos), BlockStateRemapper.getClientBlockState(blockState)));
+                    return new ClientboundSectionBlocksUpdatePacket(sectionPos, blockStates);
                 }
             }
             case ClientboundLevelChunkWithLightPacket packet -> {
@@ -244,64 +357,63 @@ public class PacketListener {
                 if (player == null) break;
                 ClientboundLevelChunkPacketData chunkData = packet.getChunkData();
                 // noinspection resource -- false positive for ServerPlayer#level()
-                processChunkPacket(chunkData, player.level().getSectionsCount());
+                int sizeBefore = handler.sampled ? ReflectionUtils.getBuffer(chunkData).length : 0;
+                processChunkPacket(chunkData, player.level(), packet.getX(), packet.getZ());
+                if (handler.sampled) {
+                    PacketProfiler.recordBytes(packet.getClass(), player, sizeBefore, ReflectionUtils.getBuffer(chunkData).length);
+                }
             }
             case ClientboundContainerSetContentPacket packet -> {
-                ServerPlayer player = handler.getPlayer(ctx);
-                List<ItemStack> items = new ObjectArrayList<>(packet.items());
-                boolean requiresEdit = false;
-                for (int i = 0; i < items.size(); i++) {
-                    ItemStack item = items.get(i);
+                List<ItemStack> originalItems = packet.items();
+                List<ItemStack> items = null; // Only copied once an item changes
+                for (int i = 0, size = originalItems.size(); i < size; i++) {
+                    ItemStack item = originalItems.get(i);
                     Optional<ItemStack> newItem = editItem(
                             item,
-                            player != null && packet.containerId() == 0 && i - 36 == player.getInventory().getSelectedSlot()
+                            packet.containerId() == 0 && i - 36 == handler.dynamicSlot
                             /// This will check if it is the player inventory and if it is the selected slot (main hand)
                             /// @see dev.lost.engine.listeners.DynamicMaterialListener
                     );
                     if (newItem.isPresent()) {
-                        requiresEdit = true;
+                        if (items == null) items = new ObjectArrayList<>(originalItems);
                         items.set(i, newItem.get());
                     }
                 }
                 Optional<ItemStack> carriedItem = editItem(packet.carriedItem(), false);
-                if (requiresEdit || carriedItem.isPresent()) {
-                    return new ClientboundContainerSetContentPacket(packet.containerId(), packet.stateId(), items, carriedItem.orElseGet(packet::carriedItem));
+                if (items != null || carriedItem.isPresent()) {
+                    return new ClientboundContainerSetContentPacket(
+                            packet.containerId(),
+                            packet.stateId(),
+                            items != null ? items : originalItems,
+                            carriedItem.orElseGet(packet::carriedItem)
+                    );
                 }
             }
             case ClientboundContainerSetSlotPacket packet -> {
-                ServerPlayer player = handler.getPlayer(ctx);
                 ItemStack item = packet.getItem();
-                Optional<ItemStack> newItem = editItem(
-                        item,
-                        player != null && packet.getContainerId() == 0 && packet.getSlot() - 36 == player.getInventory().getSelectedSlot()
+                int hotbarSlot = packet.getSlot() - 36;
+                Optional<ItemStack> newItem = packet.getContainerId() == 0 && Inventory.isHotbarSlot(hotbarSlot)
                         /// This will check if it is the player inventory and if it is the selected slot (main hand)
                         /// @see dev.lost.engine.listeners.DynamicMaterialListener
-                );
-                newItem.ifPresent(itemStack -> {
-                    try {
-                        ReflectionUtils.setItemStack(packet, itemStack);
-                    } catch (Exception e) {
-                        throw new RuntimeException("Failed to update item via reflection in ClientboundContainerSetSlotPacket", e);
-                    }
-                });
+                        ? handler.editHotbarItem(hotbarSlot, item, hotbarSlot == handler.dynamicSlot)
+                        : editItem(item, false);
+                if (newItem.isPresent()) {
+                    return new ClientboundContainerSetSlotPacket(packet.getContainerId(), packet.getStateId(), packet.getSlot(), newItem.get());
+                }
             }
             case ClientboundSetEquipmentPacket packet -> {
-                List<Pair<EquipmentSlot, ItemStack>> items = new ObjectArrayList<>(packet.getSlots());
-                boolean requiresEdit = false;
-                for (int i = 0; i < items.size(); i++) {
-                    ItemStack item = items.get(i).getSecond();
-                    Optional<ItemStack> newItem = editItem(item, false);
+                List<Pair<EquipmentSlot, ItemStack>> originalItems = packet.getSlots();
+                List<Pair<EquipmentSlot, ItemStack>> items = null; // Only copied once an item changes
+                for (int i = 0, size = originalItems.size(); i < size; i++) {
+                    Pair<EquipmentSlot, ItemStack> slot = originalItems.get(i);
+                    Optional<ItemStack> newItem = editItem(slot.getSecond(), false);
                     if (newItem.isPresent()) {
-                        items.set(i, Pair.of(items.get(i).getFirst(), newItem.get()));
-                        requiresEdit = true;
+                        if (items == null) items = new ObjectArrayList<>(originalItems);
+                        items.set(i, Pair.of(slot.getFirst(), newItem.get()));
                     }
                 }
-                if (requiresEdit) {
-                    try {
-                        ReflectionUtils.setEquipmentSlots(packet, items);
-                    } catch (Exception e) {
-                        throw new RuntimeException("Failed to update equipment slots via reflection in ClientboundSetEquipmentPacket", e);
-                    }
+                if (items != null) {
+                    return new ClientboundSetEquipmentPacket(packet.getEntity(), items);
                 }
             }
             case ClientboundSetCursorItemPacket(ItemStack contents) -> {
@@ -311,33 +423,74 @@ public class PacketListener {
                 }
             }
             case ClientboundSystemChatPacket(Component content, boolean overlay) -> {
-                // Using JSON is the best way I found it might not be optimized, but if we don't do anything, it would kick the player
-                JsonElement component = JsonParser.parseString(componentToJson(content));
-                JsonElement newComponent = replaceLostEngineHoverItems(component.deepCopy());
-                if (!newComponent.equals(component)) {
-                    return new ClientboundSystemChatPacket(jsonToComponent(newComponent.toString()), overlay);
+                Component newContent = ComponentRewriter.rewrite(content);
+                if (newContent != content) {
+                    return new ClientboundSystemChatPacket(newContent, overlay);
+                }
+            }
+            case ClientboundPlayerChatPacket packet -> {
+                Component unsignedContent = packet.unsignedContent() != null ? ComponentRewriter.rewrite(packet.unsignedContent()) : null;
+                ChatType.Bound chatType = ComponentRewriter.rewrite(packet.chatType());
+                if (unsignedContent != packet.unsignedContent() || chatType != packet.chatType()) {
+                    return new ClientboundPlayerChatPacket(
+                            packet.globalIndex(),
+                            packet.sender(),
+                            packet.index(),
+                            packet.signature(),
+                            packet.body(),
+                            unsignedContent,
+                            packet.filterMask(),
+                            chatType
+                    );
+                }
+            }
+            case ClientboundDisguisedChatPacket(Component message, ChatType.Bound chatType) -> {
+                Component newMessage = ComponentRewriter.rewrite(message);
+                ChatType.Bound newChatType = ComponentRewriter.rewrite(chatType);
+                if (newMessage != message || newChatType != chatType) {
+                    return new ClientboundDisguisedChatPacket(newMessage, newChatType);
+                }
+            }
+            case ClientboundSetTitleTextPacket(Component text) -> {
+                Component newText = ComponentRewriter.rewrite(text);
+                if (newText != text) {
+                    return new ClientboundSetTitleTextPacket(newText);
+                }
+            }
+            case ClientboundSetSubtitleTextPacket(Component text) -> {
+                Component newText = ComponentRewriter.rewrite(text);
+                if (newText != text) {
+                    return new ClientboundSetSubtitleTextPacket(newText);
+                }
+            }
+            case ClientboundSetActionBarTextPacket(Component text) -> {
+                Component newText = ComponentRewriter.rewrite(text);
+                if (newText != text) {
+                    return new ClientboundSetActionBarTextPacket(newText);
                 }
             }
             case ClientboundSetEntityDataPacket(int id, List<SynchedEntityData.DataValue<?>> packedItems) -> {
-                List<SynchedEntityData.DataValue<?>> newItems = new ObjectArrayList<>(packedItems);
-                boolean requiresEdit = false;
-                for (int i = 0; i < newItems.size(); i++) {
-                    SynchedEntityData.DataValue<?> dataValue = newItems.get(i);
+                List<SynchedEntityData.DataValue<?>> newItems = null; // Only copied once a value changes
+                for (int i = 0, size = packedItems.size(); i < size; i++) {
+                    SynchedEntityData.DataValue<?> dataValue = packedItems.get(i);
+                    SynchedEntityData.DataValue<?> newDataValue = null;
                     if (dataValue.value() instanceof ItemStack item) {
                         Optional<ItemStack> newItem = editItem(item, false);
                         if (newItem.isPresent()) {
-                            requiresEdit = true;
-                            newItems.set(i, new SynchedEntityData.DataValue<>(dataValue.id(), EntityDataSerializers.ITEM_STACK, newItem.get()));
+                            newDataValue = new SynchedEntityData.DataValue<>(dataValue.id(), EntityDataSerializers.ITEM_STACK, newItem.get());
                         }
                     } else if (dataValue.value() instanceof BlockState blockState) {
-                        Optional<BlockState> newBlockState = getClientBlockState(blockState);
-                        if (newBlockState.isPresent()) {
-                            requiresEdit = true;
-                            newItems.set(i, new SynchedEntityData.DataValue<>(dataValue.id(), EntityDataSerializers.BLOCK_STATE, newBlockState.get()));
+                        BlockState newBlockState = BlockStateRemapper.getClientBlockState(blockState);
+                        if (newBlockState != blockState) {
+                            newDataValue = new SynchedEntityData.DataValue<>(dataValue.id(), EntityDataSerializers.BLOCK_STATE, newBlockState);
                         }
                     }
+                    if (newDataValue != null) {
+                        if (newItems == null) newItems = new ObjectArrayList<>(packedItems);
+                        newItems.set(i, newDataValue);
+                    }
                 }
-                if (requiresEdit) {
+                if (newItems != null) {
                     return new ClientboundSetEntityDataPacket(id, newItems);
                 }
             }
@@ -361,10 +514,10 @@ public class PacketListener {
                     }
                 } else if (packet.getParticle() instanceof BlockParticleOption particle) {
                     BlockState blockState = particle.getState();
-                    Optional<BlockState> newBlockState = getClientBlockState(blockState);
-                    if (newBlockState.isPresent()) {
+                    BlockState newBlockState = BlockStateRemapper.getClientBlockState(blockState);
+                    if (newBlockState != blockState) {
                         return new ClientboundLevelParticlesPacket(
-                                new BlockParticleOption(particle.getType(), newBlockState.get()),
+                                new BlockParticleOption(particle.getType(), newBlockState),
                                 packet.isOverrideLimiter(),
                                 packet.alwaysShow(),
                                 packet.getX(),
@@ -379,28 +532,59 @@ public class PacketListener {
                     }
                 }
             }
+            case ClientboundUpdateAttributesPacket packet -> {
+                float ratio = handler.miningRatio;
+                if (ratio == 1.0F) break;
+                ServerPlayer player = handler.getPlayer(ctx);
+                if (player == null || packet.getEntityId() != player.getId()) break;
+                boolean hasBlockBreakSpeed = false;
+                for (ClientboundUpdateAttributesPacket.AttributeSnapshot snapshot : packet.getValues()) {
+                    if (snapshot.attribute().equals(Attributes.BLOCK_BREAK_SPEED)) hasBlockBreakSpeed = true;
+                }
+                if (!hasBlockBreakSpeed) break;
+                List<AttributeInstance> attributes = new ObjectArrayList<>(packet.getValues().size());
+                for (ClientboundUpdateAttributesPacket.AttributeSnapshot snapshot : packet.getValues()) {
+                    AttributeInstance attribute = new AttributeInstance(snapshot.attribute(), attributeInstance -> {
+                    });
+                    // The ratio is between what the client actually knows and what the server thinks
+                    attribute.setBaseValue(snapshot.attribute().equals(Attributes.BLOCK_BREAK_SPEED) ? ratio * snapshot.base() : snapshot.base());
+                    snapshot.modifiers().forEach(attribute::addTransientModifier);
+                    attributes.add(attribute);
+                }
+                return new ClientboundUpdateAttributesPacket(packet.getEntityId(), attributes);
+            }
             case ClientboundBundlePacket packet -> {
-                List<Packet<? super ClientGamePacketListener>> packets = new ObjectArrayList<>();
-                for (Packet<?> subPacket : packet.subPackets()) {
-                    Object newPacket = clientbound(subPacket, ctx, handler);
-                    if (newPacket instanceof Packet<?>) {
+                List<Packet<? super ClientGamePacketListener>> packets = null; // Only rebuilt once a sub packet changes
+                int index = 0;
+                for (Packet<? super ClientGamePacketListener> subPacket : packet.subPackets()) {
+                    Object newPacket = PacketRewriterRegistry.clientbound(subPacket.getClass()).rewrite(subPacket, ctx, handler);
+                    if (newPacket != subPacket && packets == null) {
+                        packets = new ObjectArrayList<>();
+                        for (Packet<? super ClientGamePacketListener> previous : packet.subPackets()) {
+                            if (packets.size() == index) break;
+                            packets.add(previous);
+                        }
+                    }
+                    if (packets != null && newPacket instanceof Packet<?>) {
                         @SuppressWarnings("unchecked")
                         Packet<? super ClientGamePacketListener> newPacketCasted = (Packet<? super ClientGamePacketListener>) newPacket;
                         packets.add(newPacketCasted);
                     }
+                    index++;
+                }
+                if (packets != null) {
+                    return new ClientboundBundlePacket(packets);
                 }
-                return new ClientboundBundlePacket(packets);
             }
             case ClientboundLevelEventPacket packet -> {
                 if (packet.getType() == 2001 || packet.getType() == 3008) { // Block break event and Block finished brushing
                     int data = packet.getData();
-                    Block block = Block.stateById(data).getBlock();
-                    Optional<BlockState> newBlockState = getClientBlockState(block.defaultBlockState());
-                    if (newBlockState.isPresent()) {
+                    int newData = BlockStateRemapper.getClientId(data);
+                    if (newData != data) {
                         return new ClientboundLevelEventPacket(
                                 packet.getType(),
                                 packet.getPos(),
-                                Block.getId(newBlockState.get()),
+                                newData,
                                 packet.isGlobalEvent()
                         );
                     }
@@ -422,23 +606,15 @@ public class PacketListener {
                 );
             }
             case ClientboundSetHeldSlotPacket(int slot) -> {
-                if (handler.isBedrockClient) break;
+                if (Boolean.TRUE.equals(handler.isBedrockClient)) break;
                 ServerPlayer player = handler.getPlayer(ctx);
                 if (player == null) break;
-                processNewSlot(handler.slot, (byte) slot, player);
-                handler.slot = (byte) slot;
-            }
-            case ClientboundUpdateRecipesPacket packet-> {
-                try {
-                    for (Map.Entry<ResourceKey<RecipePropertySet>, RecipePropertySet> entry : packet.itemSets().entrySet()) {
-                        Set<Holder<Item>> oldItems = ReflectionUtils.getItems(entry.getValue());
-                        Set<Holder<Item>> newItems = new ObjectOpenHashSet<>(oldItems);
-                        newItems.removeIf(item -> item.value().asItem() instanceof CustomItem);
-                        if (oldItems.size() != newItems.size())
-                            ReflectionUtils.setItems(entry.getValue(), newItems);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException("Failed to update items via reflection in ClientboundUpdateRecipesPacket", e);
+                processNewSlot(handler, (byte) slot, player);
+            }
+            case ClientboundUpdateRecipesPacket packet -> {
+                Map<ResourceKey<RecipePropertySet>, RecipePropertySet> itemSets = ClientRecipePropertySets.getClientItemSets(packet.itemSets());
+                if (itemSets != packet.itemSets()) {
+                    return new ClientboundUpdateRecipesPacket(itemSets, packet.stonecutterRecipes());
                 }
             }
             default -> {
@@ -447,53 +623,39 @@ public class PacketListener {
         return msg;
     }
 
-    private static void processChunkPacket(@NotNull ClientboundLevelChunkPacketData packet, int sectionCount) throws Exception {
-        FriendlyByteBuf oldBuf = new FriendlyByteBuf(packet.getReadBuffer());
-        LevelChunkSection[] sections = new LevelChunkSection[sectionCount];
-        boolean requiresEdit = false;
-
-        for (int i = 0; i < sectionCount; i++) {
-            //noinspection DataFlowIssue -- It should work fine
-            LevelChunkSection section = new LevelChunkSection(PalettedContainerFactory.create(MinecraftServer.getServer().registryAccess()), null, null, 0);
-            section.read(oldBuf);
-
-            PalettedContainer<BlockState> container = section.getStates();
-
-            Palette<BlockState> palette = container.data.palette();
-            Object[] values = palette.moonrise$getRawPalette(null);
-
-            for (int j = 0; j < values.length; j++) {
-                Object obj = values[j];
-                if (obj instanceof BlockState state) {
-                    Optional<BlockState> clientBlockState = getClientBlockState(state);
-                    if (clientBlockState.isPresent()) {
-                        values[j] = clientBlockState.get();
-                        requiresEdit = true;
-                    }
-                }
+    private static void processChunkPacket(@NotNull ClientboundLevelChunkPacketData packet, @NotNull Level level, int x, int z) throws Exception {
+        byte[] payload = ReflectionUtils.getBuffer(packet);
+        ResourceKey<Level> dimension = level.dimension();
+        byte[] newPayload = ChunkPayloadCache.get(dimension, x, z, payload);
+        if (newPayload == null) {
+            boolean cacheEnabled = ChunkPayloadCache.isEnabled();
+            // The original payload is kept by the cache so it must not be rewritten in place
+            newPayload = ChunkPayloadRewriter.rewrite(payload, level.getSectionsCount(), !cacheEnabled);
+            if (newPayload == null) {
+                ChunkPayloadCache.unchanged();
+            } else if (cacheEnabled) {
+                ChunkPayloadCache.put(dimension, x, z, payload, newPayload);
             }
-
-            sections[i] = section;
         }
-
-        if (requiresEdit) {
-            FriendlyByteBuf newBuf = new FriendlyByteBuf(Unpooled.buffer());
-            for (LevelChunkSection section : sections) {
-                //noinspection DataFlowIssue -- this is just a regular getter
-                section.write(newBuf, null, 0);
-            }
-            ReflectionUtils.setBuffer(packet, newBuf.array());
+        if (newPayload != null && newPayload != payload) {
+            ReflectionUtils.setBuffer(packet, newPayload);
         }
     }
 
+    /**
+     * @return the stack to send to the client, a new instance the caller is free to modify
+     */
     public static Optional<ItemStack> editItem(@NotNull ItemStack item, boolean dynamicMaterial) {
-        Optional<ItemStack> optionalItemStack = Optional.empty();
-        if (item.isEmpty()) return optionalItemStack;
-        if (item.is(Items.RED_MUSHROOM_BLOCK) || (item.is(Items.MUSHROOM_STEM) || item.is(Items.BROWN_MUSHROOM_BLOCK))) {
-            if (ItemUtils.getCustomStringData(item, "lost_engine_id") == null) { // Verify it is not already converted
-                item.set(DataComponents.BLOCK_STATE, MUSHROOM_BLOCK_ITEM_STATE_PROPERTIES);
-            }
-        }
+        if (item.isEmpty()) return Optional.empty();
+        ItemStack cached = ClientItemCache.get(item, dynamicMaterial);
+        if (cached != null) return Optional.of(cached);
+        ItemStack newItem = translateItem(item, dynamicMaterial);
+        ClientItemCache.put(item, dynamicMaterial, newItem);
+        return Optional.of(newItem.copy());
+    }
+
+    private static @NotNull ItemStack translateItem(@NotNull ItemStack item, boolean dynamicMaterial) {
+        boolean isMushroomBlock = item.is(Items.RED_MUSHROOM_BLOCK) || (item.is(Items.MUSHROOM_STEM) || item.is(Items.BROWN_MUSHROOM_BLOCK));
         if (item.getItem() instanceof CustomItem customItem) {
             ItemStack newItem = dynamicMaterial ? customItem.getDynamicMaterial() : customItem.getDefaultMaterial();
             newItem.setCount(item.getCount());
@@ -504,43 +666,11 @@ public class PacketListener {
         }
         Tool tool = item.getComponents().get(DataComponents.TOOL);
         item = item.copy();
-        if (tool != null) {
-            List<Tool.Rule> rules = new ObjectArrayList<>(tool.rules());
-            for (int i = 0, size = rules.size(); i < size; i++) {
-                Tool.Rule rule = rules.get(i);
-                HolderSet<Block> originalSet = rule.blocks();
-                List<Holder<Block>> filtered = new ObjectArrayList<>();
-                for (Holder<Block> holder : originalSet) {
-                    if (holder != MUSHROOM_STEM_HOLDER && holder != BROWN_MUSHROOM_BLOCK_HOLDER && holder != RED_MUSHROOM_BLOCK_HOLDER && !(holder.value() instanceof CustomBlock)) {
-                        filtered.add(holder);
-                    }
-                }
-                HolderSet.Direct<Block> newSet = HolderSet.direct(filtered);
-                rules.set(i, new Tool.Rule(newSet, rule.speed(), rule.correctForDrops()));
-            }
-            rules.add(new Tool.Rule(
-                    HolderSet.direct(List.of(MUSHROOM_STEM_HOLDER, BROWN_MUSHROOM_BLOCK_HOLDER, RED_MUSHROOM_BLOCK_HOLDER)),
-                    Optional.of(0.01F),
-                    Optional.empty()
-            ));
-            tool = new Tool(rules, tool.defaultMiningSpeed(), tool.damagePerBlock(), tool.canDestroyBlocksInCreative());
-            item.set(DataComponents.TOOL, tool);
-        } else {
-            item.set(
-                    DataComponents.TOOL,
-                    new Tool(
-                            List.of(new Tool.Rule(
-                                    HolderSet.direct(List.of(MUSHROOM_STEM_HOLDER, BROWN_MUSHROOM_BLOCK_HOLDER, RED_MUSHROOM_BLOCK_HOLDER)),
-                                    Optional.of(0.01F),
-                                    Optional.empty()
-                            )),
-                            1.0F,
-                            1,
-                            true
-                    ));
+        if (isMushroomBlock && ItemUtils.getCustomStringData(item, "lost_engine_id") == null) { // Verify it is not already converted
+            item.set(DataComponents.BLOCK_STATE, MUSHROOM_BLOCK_ITEM_STATE_PROPERTIES);
         }
-        optionalItemStack = Optional.of(item);
-        return optionalItemStack;
+        item.set(DataComponents.TOOL, ClientToolTable.getClientTool(tool));
+        return item;
     }
 
     public static Optional<ItemStack> editItemBackward(@NotNull ItemStack item) {
@@ -578,88 +708,32 @@ public class PacketListener {
         return Optional.empty();
     }
 
-    private static void processNewSlot(byte oldSlot, byte newSlot, ServerPlayer player) {
-        if (oldSlot != newSlot) {
-            // Previous Item
-            PacketListener.editItem(player.getInventory().getItem(oldSlot), false).ifPresent(itemStack ->
-                    player.connection.send(new ClientboundSetPlayerInventoryPacket(oldSlot, itemStack))
-            );
-            // New Item
-            PacketListener.editItem(player.getInventory().getItem(newSlot), true).ifPresent(itemStack ->
-                    player.connection.send(new ClientboundSetPlayerInventoryPacket(newSlot, itemStack))
-            );
-        }
-    }
-
-    public static String componentToJson(Component component) {
-        JsonElement jsonElement = ComponentSerialization.CODEC.encodeStart(
-                JsonOps.INSTANCE, component
-        ).getOrThrow();
-        return jsonElement.toString();
-    }
-
-    public static Component jsonToComponent(String json) {
-        JsonElement jsonElement = JsonParser.parseString(json);
-        return ComponentSerialization.CODEC.parse(
-                JsonOps.INSTANCE, jsonElement
-        ).getOrThrow();
-    }
-
-    public static JsonElement replaceLostEngineHoverItems(@NotNull JsonElement element) {
-        if (element.isJsonObject()) {
-            JsonObject obj = element.getAsJsonObject();
-
-            if (obj.has("hover_event")) {
-                JsonObject hoverEvent = obj.getAsJsonObject("hover_event");
-                if (hoverEvent.has("action") && "show_item".equals(hoverEvent.get("action").getAsString()) && hoverEvent.has("id")) {
-                    String id = hoverEvent.get("id").getAsString();
-                    if (id.startsWith("lost_engine:")) {
-                        obj.remove("hover_event");
-                        // Right now I will remove it because it is a bit useless, and if we don't, it kicks the player, but I may do something else later
-                    }
-                }
-            }
-
-            for (String key : obj.keySet()) {
-                JsonElement child = obj.get(key);
-                obj.add(key, replaceLostEngineHoverItems(child));
-            }
-            return obj;
-        } else if (element.isJsonArray()) {
-            JsonArray arr = element.getAsJsonArray();
-            for (int i = 0; i < arr.size(); i++) {
-                arr.set(i, replaceLostEngineHoverItems(arr.get(i)));
-            }
-            return arr;
+    /**
+     * A scrolling player changes slot many times per tick, the dynamic material is only moved to the last one on the next tick
+     */
+    private static void processNewSlot(@NotNull ChannelDupeHandler handler, byte newSlot, @NotNull ServerPlayer player) {
+        handler.slot = newSlot;
+        if (handler.slotUpdateScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTask(LostEngine.getInstance(), () -> sendNewSlot(handler, player));
         }
-        return element;
     }
 
-    public static Optional<BlockState> getClientBlockState(@NotNull BlockState blockState) {
-        Block block = blockState.getBlock();
-        if (block instanceof CustomBlock customBlock) {
-            return Optional.of(customBlock.getClientBlockState());
-        } else if (block == Blocks.BROWN_MUSHROOM_BLOCK) {
-            return Optional.of(BlockStateProvider.BROWN_MUSHROOM_BLOCKSTATE);
-        } else if (block == Blocks.RED_MUSHROOM_BLOCK) {
-            return Optional.of(BlockStateProvider.RED_MUSHROOM_BLOCKSTATE);
-        } else if (block == Blocks.MUSHROOM_STEM) {
-            return Optional.of(BlockStateProvider.MUSHROOM_STEM_BLOCKSTATE);
+    private static void sendNewSlot(@NotNull ChannelDupeHandler handler, @NotNull ServerPlayer player) {
+        handler.slotUpdateScheduled.set(false);
+        byte oldSlot = handler.dynamicSlot;
+        byte newSlot = handler.slot;
+        if (oldSlot == newSlot || player.isRemoved()) return;
+        handler.dynamicSlot = newSlot;
+        // Translated when written, only the new slot gets its dynamic material
+        List<Packet<? super ClientGamePacketListener>> packets = new ObjectArrayList<>(2);
+        for (byte slot : new byte[]{oldSlot, newSlot}) {
+            ItemStack item = player.getInventory().getItem(slot);
+            if (!item.isEmpty()) packets.add(new ClientboundSetPlayerInventoryPacket(slot, item.copy()));
         }
-        return Optional.empty();
-    }
-
-    /**
-     * This is a simplified version of {@link  BlockState#getDestroyProgress}
-     */
-    public static float getDestroySpeed(@NotNull BlockState state, ItemStack item) {
-        //noinspection DataFlowIssue -- This is just a simple getter lol it doesn't use the parameters
-        float destroySpeed = state.getDestroySpeed(null, null);
-        if (destroySpeed == -1.0F) {
-            return 0.0F;
-        } else {
-            int i = !state.requiresCorrectToolForDrops() || item.isCorrectToolForDrops(state) ? 30 : 100;
-            return item.getDestroySpeed(state) / destroySpeed / i;
+        if (packets.size() == 1) {
+            player.connection.send(packets.getFirst());
+        } else if (!packets.isEmpty()) {
+            player.connection.send(new ClientboundBundlePacket(packets));
         }
     }
 }
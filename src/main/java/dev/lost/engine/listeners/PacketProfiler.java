@@ -0,0 +1,214 @@
+package dev.lost.engine.listeners;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.server.level.ServerPlayer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the time spent rewriting packets on the netty threads, per packet class and per player.
+ * <p>
+ * Only one packet out of {@link #getSampleInterval()} (picked at random) is timed and recorded, the table scales the counts
+ * and times back while the JSON keeps the sampled values. While stopped, the channel handler only pays for the read of
+ * {@link #isEnabled()}.
+ */
+public class PacketProfiler {
+
+    private static final String UNKNOWN_PLAYER = "<unknown>";
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    private static final Map<Class<?>, Stats> PACKET_STATS = new ConcurrentHashMap<>();
+    private static final Map<String, Stats> PLAYER_STATS = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled = false;
+    private static volatile int sampleInterval = 1;
+    private static volatile long startTime = 0;
+    private static volatile long stopTime = 0;
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Resets the previous results and starts profiling
+     *
+     * @param sampleInterval one packet out of this many is recorded, 1 records every packet
+     */
+    public static void start(int sampleInterval) {
+        if (sampleInterval < 1) throw new IllegalArgumentException("The sample interval must be at least 1: " + sampleInterval);
+        PACKET_STATS.clear();
+        PLAYER_STATS.clear();
+        PacketProfiler.sampleInterval = sampleInterval;
+        startTime = System.currentTimeMillis();
+        stopTime = 0;
+        enabled = true;
+    }
+
+    public static void stop() {
+        enabled = false;
+        stopTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return whether the current packet has to be recorded, only called while profiling
+     */
+    static boolean sample() {
+        int interval = sampleInterval;
+        return interval == 1 || ThreadLocalRandom.current().nextInt(interval) == 0;
+    }
+
+    /**
+     * Records a packet passed through without any rewriter
+     */
+    static void recordSeen(@NotNull Class<?> packetClass, @Nullable ServerPlayer player) {
+        PACKET_STATS.computeIfAbsent(packetClass, clazz -> new Stats()).seen.increment();
+        PLAYER_STATS.computeIfAbsent(playerName(player), name -> new Stats()).seen.increment();
+    }
+
+    /**
+     * Records a packet that went through its rewriter
+     *
+     * @param rewritten whether a different message was passed down the pipeline
+     */
+    static void recordRewrite(@NotNull Class<?> packetClass, @Nullable ServerPlayer player, long nanos, boolean rewritten) {
+        PACKET_STATS.computeIfAbsent(packetClass, clazz -> new Stats()).record(nanos, rewritten);
+        PLAYER_STATS.computeIfAbsent(playerName(player), name -> new Stats()).record(nanos, rewritten);
+    }
+
+    /**
+     * Records the size of a payload before and after the rewrite, only the packets carrying a raw payload (chunks) know it
+     */
+    static void recordBytes(@NotNull Class<?> packetClass, @Nullable ServerPlayer player, long before, long after) {
+        PACKET_STATS.computeIfAbsent(packetClass, clazz -> new Stats()).recordBytes(before, after);
+        PLAYER_STATS.computeIfAbsent(playerName(player), name -> new Stats()).recordBytes(before, after);
+    }
+
+    /**
+     * @return one line per packet class, the most expensive first, the counts, times and bytes are estimated from the samples
+     */
+    public static @NotNull List<String> table(int limit) {
+        long interval = sampleInterval;
+        List<String> lines = new ObjectArrayList<>();
+        if (interval > 1) lines.add("Estimated from 1 packet out of " + interval);
+        lines.add("%-40s %10s %10s %10s %10s %10s %10s".formatted("Packet", "Seen", "Rewritten", "Total ms", "Avg ns", "P99 ns", "Bytes +/-"));
+        PACKET_STATS.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Class<?>, Stats> entry) -> entry.getValue().totalNanos.sum()).reversed())
+                .limit(limit)
+                .forEach(entry -> {
+                    Stats stats = entry.getValue();
+                    lines.add("%-40s %10d %10d %10.2f %10d %10d %10d".formatted(
+                            entry.getKey().getSimpleName(),
+                            stats.seen.sum() * interval,
+                            stats.rewritten.sum() * interval,
+                            stats.totalNanos.sum() * interval / 1_000_000.0,
+                            stats.averageNanos(),
+                            stats.percentileNanos(0.99),
+                            (stats.bytesAfter.sum() - stats.bytesBefore.sum()) * interval
+                    ));
+                });
+        return lines;
+    }
+
+    public static @NotNull JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("start", startTime);
+        json.addProperty("stop", stopTime != 0 ? stopTime : System.currentTimeMillis());
+        json.addProperty("running", enabled);
+        json.addProperty("sample_interval", sampleInterval);
+        JsonArray packets = new JsonArray();
+        PACKET_STATS.forEach((packetClass, stats) -> {
+            JsonObject packet = stats.toJson();
+            packet.addProperty("packet", packetClass.getName());
+            packets.add(packet);
+        });
+        json.add("packets", packets);
+        JsonArray players = new JsonArray();
+        PLAYER_STATS.forEach((name, stats) -> {
+            JsonObject player = stats.toJson();
+            player.addProperty("player", name);
+            players.add(player);
+        });
+        json.add("players", players);
+        return json;
+    }
+
+    private static @NotNull String playerName(@Nullable ServerPlayer player) {
+        return player != null ? player.getScoreboardName() : UNKNOWN_PLAYER;
+    }
+
+    private static class Stats {
+        private final LongAdder seen = new LongAdder();
+        private final LongAdder rewritten = new LongAdder();
+        private final LongAdder timed = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder bytesBefore = new LongAdder();
+        private final LongAdder bytesAfter = new LongAdder();
+        /**
+         * Bucket {@code i} counts the rewrites that took less than {@code 2^i} nanoseconds (and at least {@code 2^(i-1)})
+         */
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private void record(long nanos, boolean rewritten) {
+            seen.increment();
+            if (rewritten) this.rewritten.increment();
+            timed.increment();
+            totalNanos.add(nanos);
+            histogram.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+        }
+
+        private void recordBytes(long before, long after) {
+            bytesBefore.add(before);
+            bytesAfter.add(after);
+        }
+
+        private long averageNanos() {
+            long count = timed.sum();
+            return count == 0 ? 0 : totalNanos.sum() / count;
+        }
+
+        /**
+         * @return the upper bound of the bucket containing the percentile
+         */
+        private long percentileNanos(double percentile) {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) count += histogram.get(i);
+            long target = (long) Math.ceil(count * percentile);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += histogram.get(i);
+                if (cumulative >= target && cumulative > 0) return i == Long.SIZE ? Long.MAX_VALUE : 1L << i;
+            }
+            return 0;
+        }
+
+        private @NotNull JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("seen", seen.sum());
+            json.addProperty("rewritten", rewritten.sum());
+            json.addProperty("total_nanos", totalNanos.sum());
+            json.addProperty("average_nanos", averageNanos());
+            json.addProperty("p50_nanos", percentileNanos(0.5));
+            json.addProperty("p99_nanos", percentileNanos(0.99));
+            json.addProperty("bytes_before", bytesBefore.sum());
+            json.addProperty("bytes_after", bytesAfter.sum());
+            JsonArray buckets = new JsonArray();
+            for (int i = 0; i < BUCKETS; i++) buckets.add(histogram.get(i));
+            json.add("histogram_log2_nanos", buckets);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package dev.lost.engine.listeners;
+
+import io.netty.channel.ChannelHandlerContext;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Rewrites a packet going through the LostEngine channel handler, see {@link PacketRewriterRegistry}
+ *
+ * @param <T> the packet type
+ */
+@FunctionalInterface
+public interface PacketRewriter<T> {
+
+    /**
+     * @return the message to pass down the pipeline, {@code packet} itself if nothing has to change
+     */
+    @NotNull Object rewrite(@NotNull T packet, @NotNull ChannelHandlerContext ctx, PacketListener.@NotNull ChannelDupeHandler handler) throws Exception;
+}
@@ -0,0 +1,64 @@
+package dev.lost.engine.listeners;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Packet rewriters indexed by packet class.
+ * <p>
+ * Each packet class is resolved once to the rewriter registered for it (or for its closest superclass), packets nobody
+ * registered for are passed through without any other check. Registering a rewriter resets the resolved classes.
+ */
+public class PacketRewriterRegistry {
+
+    private static final Reference2ObjectOpenHashMap<Class<?>, PacketRewriter<?>> SERVERBOUND = new Reference2ObjectOpenHashMap<>();
+    private static final Reference2ObjectOpenHashMap<Class<?>, PacketRewriter<?>> CLIENTBOUND = new Reference2ObjectOpenHashMap<>();
+
+    private static volatile ClassValue<PacketRewriter<Object>> serverboundLookup = createLookup(SERVERBOUND);
+    private static volatile ClassValue<PacketRewriter<Object>> clientboundLookup = createLookup(CLIENTBOUND);
+
+    /**
+     * Returned for the packets without a rewriter, it is never called
+     */
+    static final PacketRewriter<Object> PASS_THROUGH = (packet, ctx, handler) -> packet;
+
+    /**
+     * Registers a rewriter for the packets sent by the client, it replaces any rewriter previously registered for this class
+     */
+    public static synchronized <T> void registerServerbound(@NotNull Class<T> packetClass, @NotNull PacketRewriter<? super T> rewriter) {
+        SERVERBOUND.put(packetClass, rewriter);
+        serverboundLookup = createLookup(SERVERBOUND);
+    }
+
+    /**
+     * Registers a rewriter for the packets sent to the client, it replaces any rewriter previously registered for this class
+     */
+    public static synchronized <T> void registerClientbound(@NotNull Class<T> packetClass, @NotNull PacketRewriter<? super T> rewriter) {
+        CLIENTBOUND.put(packetClass, rewriter);
+        clientboundLookup = createLookup(CLIENTBOUND);
+    }
+
+    static @NotNull PacketRewriter<Object> serverbound(@NotNull Class<?> packetClass) {
+        return serverboundLookup.get(packetClass);
+    }
+
+    static @NotNull PacketRewriter<Object> clientbound(@NotNull Class<?> packetClass) {
+        return clientboundLookup.get(packetClass);
+    }
+
+    private static @NotNull ClassValue<PacketRewriter<Object>> createLookup(@NotNull Reference2ObjectOpenHashMap<Class<?>, PacketRewriter<?>> rewriters) {
+        Reference2ObjectOpenHashMap<Class<?>, PacketRewriter<?>> snapshot = new Reference2ObjectOpenHashMap<>(rewriters);
+        return new ClassValue<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            protected PacketRewriter<Object> computeValue(@NotNull Class<?> type) {
+                for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+                    @Nullable PacketRewriter<?> rewriter = snapshot.get(clazz);
+                    if (rewriter != null) return (PacketRewriter<Object>) rewriter;
+                }
+                return PASS_THROUGH;
+            }
+        };
+    }
+}
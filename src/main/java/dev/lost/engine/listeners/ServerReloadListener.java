@@ -0,0 +1,21 @@
+package dev.lost.engine.listeners;
+
+import io.papermc.paper.event.server.ServerResourcesReloadedEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Rebuilds the precomputed client translations once the data packs (and so the tags) are reloaded
+ */
+public class ServerReloadListener implements Listener {
+
+    @EventHandler
+    public void onServerResourcesReloaded(@NotNull ServerResourcesReloadedEvent event) {
+        ClientToolTable.rebuild();
+        MiningSpeedTable.rebuild();
+        ClientItemCache.invalidateAll();
+        SharedPacketCache.invalidateAll();
+        ClientRecipePropertySets.invalidateAll();
+    }
+}
@@ -0,0 +1,40 @@
+package dev.lost.engine.listeners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites of the packets broadcast to many players, the same packet instance is written to every viewer's channel.
+ * <p>
+ * The first channel rewriting a packet stores the result and the other ones reuse it. Entries are keyed by identity and
+ * only live as long as the original packet, the rewriters going through this cache must never modify the packet they get.
+ * Packets left unchanged are not stored, most of them are not shared and checking them again is cheap.
+ */
+public class SharedPacketCache {
+
+    private static final Cache<Object, Object> CACHE = CacheBuilder.newBuilder()
+            .weakKeys()
+            .expireAfterWrite(5, TimeUnit.SECONDS) // Broadcasts are written to every channel within a few ticks
+            .maximumSize(4096)
+            .build();
+
+    /**
+     * @return a rewriter sharing the results of {@code rewriter} between channels, it must not depend on the receiving player
+     */
+    public static @NotNull PacketRewriter<Object> shared(@NotNull PacketRewriter<Object> rewriter) {
+        return (packet, ctx, handler) -> {
+            Object cached = CACHE.getIfPresent(packet);
+            if (cached != null) return cached;
+            Object result = rewriter.rewrite(packet, ctx, handler);
+            if (result != packet) CACHE.put(packet, result);
+            return result;
+        };
+    }
+
+    public static void invalidateAll() {
+        CACHE.invalidateAll();
+    }
+}
@@ -1,15 +1,13 @@
 package dev.lost.engine.utils;
 
-import com.mojang.datafixers.util.Pair;
 import dev.lost.engine.annotations.CanBreakOnUpdates;
 import dev.lost.engine.bootstrap.components.SimpleComponentProperty;
+import net.minecraft.SharedConstants;
 import net.minecraft.core.Holder;
-import net.minecraft.network.protocol.game.ClientboundContainerSetSlotPacket;
+import net.minecraft.core.SectionPos;
 import net.minecraft.network.protocol.game.ClientboundLevelChunkPacketData;
 import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
-import net.minecraft.network.protocol.game.ClientboundSetEquipmentPacket;
 import net.minecraft.resources.ResourceKey;
-import net.minecraft.world.entity.EquipmentSlot;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.crafting.RecipePropertySet;
@@ -22,109 +20,78 @@ import org.bukkit.craftbukkit.util.CraftMagicNumbers;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Accessors for the internals LostEngine has to reach, they are resolved once at class loading and fail fast if anything moved.
+ * <p>
+ * Everything goes through {@link VarHandle}s and {@link MethodHandle}s stored in static final fields so the JIT can inline them,
+ * some are used for every chunk and section update sent.
+ */
 @CanBreakOnUpdates(lastCheckedVersion = "1.21.11") // Make sure the field names are still correct on new Minecraft versions
 public class ReflectionUtils {
 
-    private static final Field STATES_FIELD;
-    private static final Field BUFFER_FIELD;
-    private static final Field ITEMSTACK_FIELD;
-    private static final Field EQUIPMENT_SLOTS_FIELD;
-    private static final Field BLOCK_MATERIAL_FIELD;
-    private static final Field ITEM_MATERIAL_FIELD;
-    private static final Field MATERIAL_ITEM_FIELD;
-    private static final Field MATERIAL_BLOCK_FIELD;
-    private static final Field RECIPE_PROPERTY_SET_ITEMS;
-    private static final Method EQUIPMENT_CREATE_ID_METHOD;
+    private static final String SUPPORTED_VERSION = "1.21.11";
 
     static {
-        try {
-            STATES_FIELD = ClientboundSectionBlocksUpdatePacket.class.getDeclaredField("states");
-            STATES_FIELD.setAccessible(true);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize STATES_FIELD", e);
-        }
-        try {
-            BUFFER_FIELD = ClientboundLevelChunkPacketData.class.getDeclaredField("buffer");
-            BUFFER_FIELD.setAccessible(true);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize BUFFER_FIELD", e);
-        }
-        try {
-            ITEMSTACK_FIELD = ClientboundContainerSetSlotPacket.class.getDeclaredField("itemStack");
-            ITEMSTACK_FIELD.setAccessible(true);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize ITEMSTACK_FIELD", e);
-        }
-        try {
-            EQUIPMENT_SLOTS_FIELD = ClientboundSetEquipmentPacket.class.getDeclaredField("slots");
-            EQUIPMENT_SLOTS_FIELD.setAccessible(true);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize EQUIPMENT_SLOTS_FIELD", e);
-        }
-        try {
-            BLOCK_MATERIAL_FIELD = CraftMagicNumbers.class.getDeclaredField("BLOCK_MATERIAL");
-            BLOCK_MATERIAL_FIELD.setAccessible(true);
-            ITEM_MATERIAL_FIELD = CraftMagicNumbers.class.getDeclaredField("ITEM_MATERIAL");
-            ITEM_MATERIAL_FIELD.setAccessible(true);
-            MATERIAL_ITEM_FIELD = CraftMagicNumbers.class.getDeclaredField("MATERIAL_ITEM");
-            MATERIAL_ITEM_FIELD.setAccessible(true);
-            MATERIAL_BLOCK_FIELD = CraftMagicNumbers.class.getDeclaredField("MATERIAL_BLOCK");
-            MATERIAL_BLOCK_FIELD.setAccessible(true);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize Bukkit material fields", e);
-        }
-        try {
-            RECIPE_PROPERTY_SET_ITEMS = RecipePropertySet.class.getDeclaredField("items");
-            RECIPE_PROPERTY_SET_ITEMS.setAccessible(true);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize RECIPE_PROPERTY_SET_ITEMS", e);
-        }
-        try {
-            EQUIPMENT_CREATE_ID_METHOD = EquipmentAssets.class.getDeclaredMethod("createId", String.class);
-            EQUIPMENT_CREATE_ID_METHOD.setAccessible(true);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize EQUIPMENT_CREATE_ID_METHOD", e);
+        // Checked before resolving anything, a field with the same name may have another meaning on another version
+        String version = SharedConstants.getCurrentVersion().name();
+        if (!SUPPORTED_VERSION.equals(version)) {
+            throw new IllegalStateException("LostEngine only supports Minecraft/Paper " + SUPPORTED_VERSION + ", this server runs " + version);
         }
     }
 
-    public static BlockState[] getBlockStates(ClientboundSectionBlocksUpdatePacket packet) throws Exception {
-        return (BlockState[]) STATES_FIELD.get(packet);
+    private static final VarHandle STATES_HANDLE = varHandle(ClientboundSectionBlocksUpdatePacket.class, "states");
+    private static final VarHandle SECTION_POS_HANDLE = varHandle(ClientboundSectionBlocksUpdatePacket.class, "sectionPos");
+    private static final VarHandle BUFFER_HANDLE = varHandle(ClientboundLevelChunkPacketData.class, "buffer");
+    private static final MethodHandle BUFFER_SETTER = setter(ClientboundLevelChunkPacketData.class, "buffer");
+    private static final VarHandle BLOCK_MATERIAL_HANDLE = varHandle(CraftMagicNumbers.class, "BLOCK_MATERIAL");
+    private static final VarHandle ITEM_MATERIAL_HANDLE = varHandle(CraftMagicNumbers.class, "ITEM_MATERIAL");
+    private static final VarHandle MATERIAL_ITEM_HANDLE = varHandle(CraftMagicNumbers.class, "MATERIAL_ITEM");
+    private static final VarHandle MATERIAL_BLOCK_HANDLE = varHandle(CraftMagicNumbers.class, "MATERIAL_BLOCK");
+    private static final VarHandle RECIPE_PROPERTY_SET_ITEMS_HANDLE = varHandle(RecipePropertySet.class, "items");
+    private static final MethodHandle RECIPE_PROPERTY_SET_CONSTRUCTOR = constructor(RecipePropertySet.class, Set.class);
+    private static final MethodHandle EQUIPMENT_CREATE_ID_HANDLE = method(EquipmentAssets.class, "createId", String.class);
+
+    public static BlockState[] getBlockStates(ClientboundSectionBlocksUpdatePacket packet) {
+        return (BlockState[]) STATES_HANDLE.get(packet);
     }
 
-    public static void setBlockStates(ClientboundSectionBlocksUpdatePacket packet, BlockState[] states) throws Exception {
-        STATES_FIELD.set(packet, states);
+    public static SectionPos getSectionPos(ClientboundSectionBlocksUpdatePacket packet) {
+        return (SectionPos) SECTION_POS_HANDLE.get(packet);
     }
 
-    public static void setBuffer(ClientboundLevelChunkPacketData packet, byte[] buffer) throws Exception {
-        BUFFER_FIELD.set(packet, buffer);
+    public static byte[] getBuffer(ClientboundLevelChunkPacketData packet) {
+        return (byte[]) BUFFER_HANDLE.get(packet);
     }
 
-    public static void setItemStack(ClientboundContainerSetSlotPacket packet, ItemStack item) throws Exception {
-        ITEMSTACK_FIELD.set(packet, item);
-    }
-
-    public static void setEquipmentSlots(ClientboundSetEquipmentPacket packet, List<Pair<EquipmentSlot, ItemStack>> slots) throws Exception {
-        EQUIPMENT_SLOTS_FIELD.set(packet, slots);
+    public static void setBuffer(ClientboundLevelChunkPacketData packet, byte[] buffer) {
+        try {
+            BUFFER_SETTER.invokeExact(packet, buffer);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to set ClientboundLevelChunkPacketData#buffer", e);
+        }
     }
 
     @SuppressWarnings("unchecked")
-    public static void setBlockMaterial(Block block, Material material) throws Exception {
-        ((Map<Block, Material>) BLOCK_MATERIAL_FIELD.get(CraftMagicNumbers.INSTANCE)).put(block, material);
-        ((Map<Material, Block>) MATERIAL_BLOCK_FIELD.get(CraftMagicNumbers.INSTANCE)).put(material, block);
+    public static void setBlockMaterial(Block block, Material material) {
+        ((Map<Block, Material>) BLOCK_MATERIAL_HANDLE.get()).put(block, material);
+        ((Map<Material, Block>) MATERIAL_BLOCK_HANDLE.get()).put(material, block);
     }
 
     @SuppressWarnings("unchecked")
-    public static void setItemMaterial(ItemStack itemStack, Material material) throws Exception {
-        ((Map<net.minecraft.world.item.Item, Material>) ITEM_MATERIAL_FIELD.get(CraftMagicNumbers.INSTANCE)).put(itemStack.getItem(), material);
-        ((Map<Material, net.minecraft.world.item.Item>) MATERIAL_ITEM_FIELD.get(CraftMagicNumbers.INSTANCE)).put(material, itemStack.getItem());
+    public static void setItemMaterial(ItemStack itemStack, Material material) {
+        ((Map<net.minecraft.world.item.Item, Material>) ITEM_MATERIAL_HANDLE.get()).put(itemStack.getItem(), material);
+        ((Map<Material, net.minecraft.world.item.Item>) MATERIAL_ITEM_HANDLE.get()).put(material, itemStack.getItem());
     }
 
     public static @Nullable Class<?> getTypeArgument(@NonNull Class<?> clazz) {
@@ -141,20 +108,83 @@ public class ReflectionUtils {
     }
 
     @SuppressWarnings("unchecked")
-    public static Set<Holder<Item>> getItems(RecipePropertySet recipePropertySet) throws Exception {
-        return (Set<Holder<Item>>) RECIPE_PROPERTY_SET_ITEMS.get(recipePropertySet);
+    public static Set<Holder<Item>> getItems(RecipePropertySet recipePropertySet) {
+        return (Set<Holder<Item>>) RECIPE_PROPERTY_SET_ITEMS_HANDLE.get(recipePropertySet);
     }
 
-    public static void setItems(RecipePropertySet recipePropertySet, Set<Holder<Item>> items) throws Exception {
-        RECIPE_PROPERTY_SET_ITEMS.set(recipePropertySet, items);
+    public static RecipePropertySet createRecipePropertySet(Set<Holder<Item>> items) {
+        try {
+            return (RecipePropertySet) RECIPE_PROPERTY_SET_CONSTRUCTOR.invokeExact(items);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to invoke the RecipePropertySet constructor", e);
+        }
     }
 
     @SuppressWarnings("unchecked")
     public static ResourceKey<EquipmentAsset> createEquipmentAssetId(String name) {
         try {
-            return (ResourceKey<EquipmentAsset>) EQUIPMENT_CREATE_ID_METHOD.invoke(null, name);
+            return (ResourceKey<EquipmentAsset>) EQUIPMENT_CREATE_ID_HANDLE.invokeExact(name);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to invoke EquipmentAssets#createId", e);
+        }
+    }
+
+    private static @NonNull Field field(@NonNull Class<?> owner, @NonNull String name) {
+        try {
+            Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to find the field " + owner.getName() + "#" + name + ", LostEngine only supports Minecraft/Paper " + SUPPORTED_VERSION, e);
+        }
+    }
+
+    private static @NonNull VarHandle varHandle(@NonNull Class<?> owner, @NonNull String name) {
+        try {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).unreflectVarHandle(field(owner, name));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to access the field " + owner.getName() + "#" + name, e);
+        }
+    }
+
+    /**
+     * Final fields can only be written through a setter created from an accessible {@link Field}
+     */
+    private static @NonNull MethodHandle setter(@NonNull Class<?> owner, @NonNull String name) {
+        try {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).unreflectSetter(field(owner, name));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to access the field " + owner.getName() + "#" + name, e);
+        }
+    }
+
+    private static @NonNull MethodHandle constructor(@NonNull Class<?> owner, Class<?> @NonNull ... parameterTypes) {
+        Constructor<?> constructor;
+        try {
+            constructor = owner.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
         } catch (Exception e) {
-            throw new RuntimeException("Failed to invoke EquipmentAssets#createId via reflection", e);
+            throw new RuntimeException("Failed to find the constructor of " + owner.getName() + ", LostEngine only supports Minecraft/Paper " + SUPPORTED_VERSION, e);
+        }
+        try {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).unreflectConstructor(constructor);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to access the constructor of " + owner.getName(), e);
+        }
+    }
+
+    private static @NonNull MethodHandle method(@NonNull Class<?> owner, @NonNull String name, Class<?> @NonNull ... parameterTypes) {
+        Method method;
+        try {
+            method = owner.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to find the method " + owner.getName() + "#" + name + ", LostEngine only supports Minecraft/Paper " + SUPPORTED_VERSION, e);
+        }
+        try {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to access the method " + owner.getName() + "#" + name, e);
         }
     }
 }